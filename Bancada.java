@@ -0,0 +1,378 @@
+package bancada;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Bancada de medição dos programas Bancada* de cada domínio.
+ * Cada caso roda algumas rodadas de aquecimento e de medição; os dados são
+ * gerados de novo a cada rodada, fora do tempo medido. O resultado de cada
+ * caso (mediana de ns por operação e de bytes alocados por operação na
+ * thread que mede) é comparado com a linha base gravada em arquivo.
+ * Casos medidos com {@link #medirConcorrente} rodam em outras threads e não
+ * têm bytes por operação: a alocação das threads de trabalho não é visível.
+ * A JVM varia de uma execução para outra (JIT, alocação do heap), então a
+ * suíte é repetida em processos novos e vale a mediana das execuções. Junto
+ * com ela vai o ruído do caso: a diferença entre a execução mais lenta e a
+ * mais rápida, ou a distância entre os quartis das rodadas, se for maior,
+ * ambas relativas à mediana. O caso só é regressão se passar da tolerância e
+ * também do dobro do ruído, o da base ou o da medição atual.
+ *
+ * Argumentos: --tamanhos 100,10000 --rodadas 9 --aquecimento 3
+ * --repeticoes 3 --base bancada.base --tolerancia 0.5 --gravar
+ */
+public final class Bancada {
+
+    public interface Gerador<T> {
+        T gerar(int tamanho, Random aleatorio) throws Exception;
+    }
+
+    public interface Execucao<T> {
+        /**
+         * Roda o caso sobre os dados gerados e retorna quantas operações fez.
+         */
+        long executar(T dados) throws Exception;
+    }
+
+    private static final long SEMENTE = 20240601L;
+    private static final PrintStream SAIDA_DESCARTADA = new PrintStream(OutputStream.nullOutputStream());
+
+    // Evita que o JIT descarte cálculos cujo resultado ninguém usa.
+    private static volatile double sumidouro;
+
+    private final String suite;
+    private final int[] tamanhos;
+    private final int rodadas;
+    private final int aquecimento;
+    private final Path arquivoBase;
+    private final double tolerancia;
+    private final int repeticoes;
+    private final boolean gravar;
+    // Argumentos que as repetições recebem, sem --base, --gravar e --repeticoes
+    private final List<String> repassados = new ArrayList<>();
+    private final Map<String, double[]> base;
+    private final Map<String, double[]> medidos = new TreeMap<>();
+    private final List<String> regressoes = new ArrayList<>();
+
+    public Bancada(String suite, String[] args, int... tamanhosPadrao) {
+        this.suite = suite;
+        int[] tamanhos = tamanhosPadrao;
+        int rodadas = 9;
+        int aquecimento = 3;
+        Path arquivoBase = Paths.get("bancada.base");
+        // Acima da variação de ~30% entre execuções na máquina que gravou a base.
+        double tolerancia = 0.5;
+        int repeticoes = 3;
+        boolean gravar = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--tamanhos":
+                    tamanhos = Arrays.stream(valor(args, ++i).split(",")).mapToInt(Integer::parseInt).toArray();
+                    repassar(args, i);
+                    break;
+                case "--rodadas":
+                    rodadas = Integer.parseInt(valor(args, ++i));
+                    repassar(args, i);
+                    break;
+                case "--aquecimento":
+                    aquecimento = Integer.parseInt(valor(args, ++i));
+                    repassar(args, i);
+                    break;
+                case "--base":
+                    arquivoBase = Paths.get(valor(args, ++i));
+                    break;
+                case "--tolerancia":
+                    tolerancia = Double.parseDouble(valor(args, ++i));
+                    break;
+                case "--repeticoes":
+                    repeticoes = Integer.parseInt(valor(args, ++i));
+                    break;
+                case "--gravar":
+                    gravar = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Argumento desconhecido: " + args[i]);
+            }
+        }
+        if (tamanhos.length == 0 || rodadas <= 0 || aquecimento < 0 || repeticoes <= 0) {
+            throw new IllegalArgumentException("Informe ao menos um tamanho, uma rodada e uma repetição.");
+        }
+        this.tamanhos = tamanhos;
+        this.rodadas = rodadas;
+        this.aquecimento = aquecimento;
+        this.arquivoBase = arquivoBase;
+        this.tolerancia = tolerancia;
+        this.repeticoes = repeticoes;
+        this.gravar = gravar;
+        this.base = lerBase(arquivoBase);
+    }
+
+    private void repassar(String[] args, int i) {
+        repassados.add(args[i - 1]);
+        repassados.add(args[i]);
+    }
+
+    private static String valor(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Falta o valor de " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    public static void consumir(double valor) {
+        sumidouro += valor;
+    }
+
+    /**
+     * Mede o caso em cada tamanho pedido na linha de comando.
+     */
+    public <T> void medir(String caso, Gerador<T> gerador, Execucao<T> execucao) {
+        for (int tamanho : tamanhos) {
+            medir(caso, tamanho, gerador, execucao, false);
+        }
+    }
+
+    /**
+     * Mede o caso num tamanho fixo, independente de --tamanhos.
+     */
+    public <T> void medir(String caso, int tamanho, Gerador<T> gerador, Execucao<T> execucao) {
+        medir(caso, tamanho, gerador, execucao, false);
+    }
+
+    /**
+     * Mede um caso que trabalha em outras threads; só o tempo é medido.
+     */
+    public <T> void medirConcorrente(String caso, Gerador<T> gerador, Execucao<T> execucao) {
+        for (int tamanho : tamanhos) {
+            medir(caso, tamanho, gerador, execucao, true);
+        }
+    }
+
+    private <T> void medir(String caso, int tamanho, Gerador<T> gerador, Execucao<T> execucao, boolean concorrente) {
+        double[] nsPorOp = new double[rodadas];
+        double[] bytesPorOp = new double[rodadas];
+        PrintStream saida = System.out;
+        try {
+            for (int rodada = 0; rodada < aquecimento + rodadas; rodada++) {
+                // Os métodos do domínio imprimem no console; a medição não
+                // deve depender da velocidade do terminal.
+                System.setOut(SAIDA_DESCARTADA);
+                T dados = gerador.gerar(tamanho, new Random(SEMENTE + rodada));
+                long alocadoAntes = alocadoNaThread();
+                long inicio = System.nanoTime();
+                long operacoes = execucao.executar(dados);
+                long duracao = System.nanoTime() - inicio;
+                long alocado = alocadoNaThread() - alocadoAntes;
+                System.setOut(saida);
+                if (operacoes <= 0) {
+                    throw new IllegalStateException("Caso " + caso + " não executou nenhuma operação.");
+                }
+                if (rodada >= aquecimento) {
+                    nsPorOp[rodada - aquecimento] = (double) duracao / operacoes;
+                    bytesPorOp[rodada - aquecimento] = concorrente || alocadoAntes < 0
+                            ? Double.NaN : (double) alocado / operacoes;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Falha ao medir " + caso + " com tamanho " + tamanho, e);
+        } finally {
+            System.setOut(saida);
+        }
+        medidos.put(suite + "." + caso + "@" + tamanho,
+                new double[]{mediana(nsPorOp), mediana(bytesPorOp), ruido(nsPorOp)});
+    }
+
+    private void registrar(String chave, double nsPorOp, double bytesPorOp, double ruido) {
+        StringBuilder linha = new StringBuilder(String.format("%-48s %12.1f ns/op %12.0f op/s %10s B/op  ruído %3.0f%%",
+                chave, nsPorOp, 1e9 / nsPorOp, Double.isNaN(bytesPorOp) ? "-" : String.format("%.1f", bytesPorOp),
+                ruido * 100));
+        double[] anterior = base.get(chave);
+        if (anterior != null) {
+            double variacao = nsPorOp / anterior[0] - 1;
+            double limite = Math.max(tolerancia, 2 * Math.max(ruido, anterior[2]));
+            linha.append(String.format("  base %.1f ns/op (%+.0f%%, limite %.0f%%)",
+                    anterior[0], variacao * 100, limite * 100));
+            if (variacao > limite) {
+                linha.append("  REGRESSAO");
+                regressoes.add(chave);
+            }
+        }
+        System.out.println(linha);
+    }
+
+    /**
+     * Roda as demais repetições, compara a mediana delas com a base, grava a
+     * linha base (com --gravar) e retorna o número de casos que ficaram mais
+     * lentos que a base além do limite.
+     */
+    public int concluir() {
+        List<Map<String, double[]>> execucoes = new ArrayList<>();
+        execucoes.add(medidos);
+        for (int i = 1; i < repeticoes; i++) {
+            execucoes.add(repetir());
+        }
+        Map<String, double[]> combinados = combinar(execucoes);
+        for (Map.Entry<String, double[]> caso : combinados.entrySet()) {
+            double[] valores = caso.getValue();
+            registrar(caso.getKey(), valores[0], valores[1], valores[2]);
+        }
+        if (gravar) {
+            Map<String, double[]> novaBase = new TreeMap<>(base);
+            novaBase.putAll(combinados);
+            gravarBase(arquivoBase, novaBase);
+            System.out.println("Linha base gravada em " + arquivoBase + " (" + combinados.size() + " casos).");
+            return 0;
+        }
+        if (!regressoes.isEmpty()) {
+            System.out.println("Regressões acima do limite: " + regressoes);
+        }
+        return regressoes.size();
+    }
+
+    /**
+     * Roda a suíte de novo num processo à parte, que grava as medições numa
+     * linha base temporária.
+     */
+    private Map<String, double[]> repetir() {
+        String comando = System.getProperty("sun.java.command");
+        if (comando == null || comando.isEmpty()) {
+            throw new IllegalStateException("Classe principal desconhecida; use --repeticoes 1.");
+        }
+        Path saida = null;
+        try {
+            saida = Files.createTempFile("bancada-" + suite, ".base");
+            List<String> argumentos = new ArrayList<>();
+            argumentos.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            argumentos.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            argumentos.add("-cp");
+            argumentos.add(System.getProperty("java.class.path"));
+            argumentos.add(comando.split(" ")[0]);
+            argumentos.addAll(repassados);
+            argumentos.addAll(Arrays.asList("--repeticoes", "1", "--gravar", "--base", saida.toString()));
+            Process processo = new ProcessBuilder(argumentos)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            int codigo = processo.waitFor();
+            if (codigo != 0) {
+                throw new IllegalStateException("Repetição de " + suite + " terminou com código " + codigo);
+            }
+            return lerBase(saida);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao repetir a suíte " + suite, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Repetição de " + suite + " interrompida", e);
+        } finally {
+            if (saida != null) {
+                try {
+                    Files.deleteIfExists(saida);
+                } catch (IOException e) {
+                    // Arquivo temporário: se ficar para trás, não atrapalha.
+                }
+            }
+        }
+    }
+
+    // Mediana de cada caso entre as execuções; o ruído é o maior entre o das
+    // rodadas e a diferença entre a execução mais lenta e a mais rápida.
+    private static Map<String, double[]> combinar(List<Map<String, double[]>> execucoes) {
+        Map<String, double[]> combinados = new TreeMap<>();
+        for (String chave : execucoes.get(0).keySet()) {
+            double[] ns = new double[execucoes.size()];
+            double[] bytes = new double[execucoes.size()];
+            double[] ruidos = new double[execucoes.size()];
+            for (int i = 0; i < execucoes.size(); i++) {
+                double[] valores = execucoes.get(i).get(chave);
+                if (valores == null) {
+                    throw new IllegalStateException("Repetição sem o caso " + chave);
+                }
+                ns[i] = valores[0];
+                bytes[i] = valores[1];
+                ruidos[i] = valores[2];
+            }
+            double mediana = mediana(ns);
+            double entreExecucoes = (Arrays.stream(ns).max().getAsDouble() - Arrays.stream(ns).min().getAsDouble()) / mediana;
+            combinados.put(chave, new double[]{mediana, mediana(bytes), Math.max(mediana(ruidos), entreExecucoes)});
+        }
+        return combinados;
+    }
+
+    private static double mediana(double[] valores) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        int meio = ordenados.length / 2;
+        return ordenados.length % 2 == 1 ? ordenados[meio] : (ordenados[meio - 1] + ordenados[meio]) / 2;
+    }
+
+    // Distância entre os quartis, relativa à mediana
+    private static double ruido(double[] valores) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        int n = ordenados.length;
+        double mediana = mediana(ordenados);
+        return mediana > 0 ? (ordenados[(3 * (n - 1)) / 4] - ordenados[(n - 1) / 4]) / mediana : 0;
+    }
+
+    private static long alocadoNaThread() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // Uma linha por caso: "<suite>.<caso>@<tamanho> <ns/op> <bytes/op> <ruído>";
+    // bytes/op é NaN nos casos concorrentes e bases antigas não têm o ruído.
+    private static Map<String, double[]> lerBase(Path arquivo) {
+        Map<String, double[]> base = new TreeMap<>();
+        if (!Files.exists(arquivo)) {
+            return base;
+        }
+        try {
+            for (String linha : Files.readAllLines(arquivo, StandardCharsets.UTF_8)) {
+                linha = linha.trim();
+                if (linha.isEmpty() || linha.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linha.split("\\s+");
+                double ruido = campos.length > 3 ? Double.parseDouble(campos[3]) : 0;
+                base.put(campos[0], new double[]{Double.parseDouble(campos[1]), Double.parseDouble(campos[2]), ruido});
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler a linha base " + arquivo, e);
+        }
+        return base;
+    }
+
+    private static void gravarBase(Path arquivo, Map<String, double[]> base) {
+        List<String> linhas = new ArrayList<>();
+        linhas.add("# caso@tamanho ns/op bytes/op ruído");
+        for (Map.Entry<String, double[]> entrada : base.entrySet()) {
+            linhas.add(String.format(Locale.ROOT, "%s %.1f %.1f %.3f",
+                    entrada.getKey(), entrada.getValue()[0], entrada.getValue()[1], entrada.getValue()[2]));
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try {
+            Files.write(temporario, linhas, StandardCharsets.UTF_8);
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar a linha base " + arquivo, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package biblioteca;
+
+import bancada.Bancada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medições de empréstimo/devolução e do ranking de livros populares.
+ * Tamanho: número de livros do acervo.
+ */
+public class BancadaBiblioteca {
+
+    private static final int USUARIOS = 200;
+    private static final int CONSULTAS = 100_000;
+
+    private static final class Acervo {
+        final Biblioteca biblioteca = new Biblioteca();
+        final List<Livro> livros = new ArrayList<>();
+        final List<Usuario> usuarios = new ArrayList<>();
+        int[] sorteio;
+    }
+
+    private static Acervo gerar(int livros, Random aleatorio, int reservasPorLivro) throws Exception {
+        Acervo acervo = new Acervo();
+        for (int i = 0; i < livros; i++) {
+            Livro livro = new Livro("Livro " + i, new Autor("Autor " + (i % 97)), 1 + aleatorio.nextInt(3));
+            acervo.biblioteca.adicionarLivro(livro);
+            acervo.livros.add(livro);
+        }
+        for (int i = 0; i < USUARIOS; i++) {
+            Usuario usuario = new Usuario("Usuário " + i);
+            acervo.biblioteca.adicionarUsuario(usuario);
+            acervo.usuarios.add(usuario);
+        }
+        for (Livro livro : acervo.livros) {
+            int reservas = aleatorio.nextInt(reservasPorLivro + 1);
+            for (int i = 0; i < reservas; i++) {
+                livro.reservar(acervo.usuarios.get(aleatorio.nextInt(USUARIOS)));
+            }
+        }
+        acervo.sorteio = new int[Math.max(livros, 20_000)];
+        for (int i = 0; i < acervo.sorteio.length; i++) {
+            acervo.sorteio[i] = aleatorio.nextInt(livros);
+        }
+        // Entrega os avisos das reservas antes de começar a medir.
+        acervo.biblioteca.encerrarNotificacoes();
+        return acervo;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("biblioteca", args, 100, 10_000);
+
+        bancada.medir("emprestimo-devolucao", (livros, aleatorio) -> gerar(livros, aleatorio, 0), acervo -> {
+            long operacoes = 0;
+            for (int i = 0; i < acervo.sorteio.length; i++) {
+                Livro livro = acervo.livros.get(acervo.sorteio[i]);
+                Usuario usuario = acervo.usuarios.get(i % USUARIOS);
+                usuario.emprestarLivro(livro, acervo.biblioteca);
+                usuario.devolverLivro(livro, acervo.biblioteca);
+                operacoes += 2;
+            }
+            acervo.biblioteca.encerrarNotificacoes();
+            return operacoes;
+        });
+
+        bancada.medir("listar-populares", (livros, aleatorio) -> gerar(livros, aleatorio, 8), acervo -> {
+            for (int i = 0; i < CONSULTAS; i++) {
+                Bancada.consumir(acervo.biblioteca.listarLivrosPopulares().size());
+            }
+            return CONSULTAS;
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
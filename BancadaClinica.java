@@ -0,0 +1,77 @@
+package gerenciamento;
+
+import bancada.Bancada;
+import gerenciamento.Clinica.HorarioIndisponivelException;
+import gerenciamento.Clinica.Medico;
+import gerenciamento.Clinica.Paciente;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Medição do agendamento concorrente: muitos clientes tentam marcar consultas
+ * de 15 a 45 minutos em 20 médicos e 500 pacientes ao longo de 30 dias.
+ * Tamanho: número de clientes, cada um com 40 tentativas, num pool de 64 threads.
+ */
+public class BancadaClinica {
+
+    private static final int MEDICOS = 20;
+    private static final int PACIENTES = 500;
+    private static final int TENTATIVAS = 40;
+    private static final int THREADS = 64;
+    private static final LocalDateTime INICIO = LocalDate.of(2025, 1, 1).atTime(8, 0);
+
+    private static List<Callable<Void>> gerar(int clientes, Random aleatorio) {
+        List<Medico> medicos = new ArrayList<>();
+        for (int i = 0; i < MEDICOS; i++) {
+            medicos.add(new Medico("Médico " + i));
+        }
+        List<Paciente> pacientes = new ArrayList<>();
+        for (int i = 0; i < PACIENTES; i++) {
+            pacientes.add(new Paciente("Paciente " + i));
+        }
+        List<Callable<Void>> tarefas = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            long semente = aleatorio.nextLong();
+            tarefas.add(() -> {
+                Random sorteio = new Random(semente);
+                for (int k = 0; k < TENTATIVAS; k++) {
+                    Medico medico = medicos.get(sorteio.nextInt(MEDICOS));
+                    Paciente paciente = pacientes.get(sorteio.nextInt(PACIENTES));
+                    LocalDateTime inicio = INICIO.plusDays(sorteio.nextInt(30)).plusMinutes(15L * sorteio.nextInt(40));
+                    try {
+                        medico.agendarConsulta(paciente, inicio, Duration.ofMinutes(15L * (1 + sorteio.nextInt(3))));
+                    } catch (HorarioIndisponivelException e) {
+                        // Recusas fazem parte da carga medida.
+                    }
+                }
+                return null;
+            });
+        }
+        return tarefas;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("clinica", args, 500, 5000);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            bancada.medirConcorrente("agendamento-concorrente", BancadaClinica::gerar, tarefas -> {
+                for (Future<Void> resultado : executor.invokeAll(tarefas)) {
+                    resultado.get();
+                }
+                return (long) tarefas.size() * TENTATIVAS;
+            });
+        } finally {
+            executor.shutdown();
+        }
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
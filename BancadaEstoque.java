@@ -0,0 +1,69 @@
+import bancada.Bancada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Classe BancadaEstoque: mede reserva+liberação no contador fatiado de Produto
+// contra um contador guardado por synchronized. Tamanho: número de threads;
+// cada caso faz 4 milhões de reservas e liberações no total.
+public class BancadaEstoque {
+
+    private static final int OPERACOES = 4_000_000;
+
+    private static final class Carga {
+        final int threads;
+        final Produto produto = new Produto("Produto", 1, Integer.MAX_VALUE / 2);
+        final int[] contador = {Integer.MAX_VALUE / 2};
+
+        Carga(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    private static long rodar(int threads, Runnable trabalho) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                resultados.add(executor.submit(trabalho));
+            }
+            for (Future<?> resultado : resultados) {
+                resultado.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return OPERACOES;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("estoque", args, 1, 2, 4, 8);
+
+        bancada.medirConcorrente("reserva-liberacao-fatiada", (threads, aleatorio) -> new Carga(threads),
+                carga -> rodar(carga.threads, () -> {
+                    for (int k = 0; k < OPERACOES / carga.threads; k++) {
+                        carga.produto.reservar(1).liberar();
+                    }
+                }));
+
+        bancada.medirConcorrente("reserva-liberacao-synchronized", (threads, aleatorio) -> new Carga(threads),
+                carga -> rodar(carga.threads, () -> {
+                    int[] contador = carga.contador;
+                    for (int k = 0; k < OPERACOES / carga.threads; k++) {
+                        synchronized (contador) {
+                            if (contador[0] >= 1) {
+                                contador[0]--;
+                            }
+                        }
+                        synchronized (contador) {
+                            contador[0]++;
+                        }
+                    }
+                }));
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
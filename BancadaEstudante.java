@@ -0,0 +1,56 @@
+package estudante;
+
+import bancada.Bancada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Classe BancadaEstudante: mede Estudante.calcularMedia e a troca de notas que
+// mantém a média acumulada. Tamanho: disciplinas em que o estudante está matriculado.
+public class BancadaEstudante {
+
+    private static final int CONSULTAS = 1_000_000;
+    private static final int NOTAS = 200_000;
+
+    private static final class Boletim {
+        final Estudante estudante = new Estudante("Estudante");
+        final List<Disciplina> disciplinas = new ArrayList<>();
+        final double[] notas = new double[NOTAS];
+    }
+
+    private static Boletim gerar(int disciplinas, Random aleatorio) {
+        Boletim boletim = new Boletim();
+        for (int i = 0; i < disciplinas; i++) {
+            Disciplina disciplina = new Disciplina("Disciplina " + i);
+            boletim.estudante.matricularDisciplina(disciplina);
+            boletim.estudante.atribuirNota(disciplina, aleatorio.nextInt(101) / 10.0);
+            boletim.disciplinas.add(disciplina);
+        }
+        for (int i = 0; i < NOTAS; i++) {
+            boletim.notas[i] = aleatorio.nextInt(101) / 10.0;
+        }
+        return boletim;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("estudante", args, 10, 1000);
+
+        bancada.medir("calcular-media", BancadaEstudante::gerar, boletim -> {
+            for (int i = 0; i < CONSULTAS; i++) {
+                Bancada.consumir(boletim.estudante.calcularMedia());
+            }
+            return CONSULTAS;
+        });
+
+        bancada.medir("atribuir-nota", BancadaEstudante::gerar, boletim -> {
+            int total = boletim.disciplinas.size();
+            for (int i = 0; i < NOTAS; i++) {
+                boletim.estudante.atribuirNota(boletim.disciplinas.get(i % total), boletim.notas[i]);
+            }
+            return NOTAS;
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
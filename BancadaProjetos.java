@@ -0,0 +1,50 @@
+package projetos;
+
+import bancada.Bancada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Classe BancadaProjetos: mede Projeto.atribuirTarefa. Tamanho: tarefas
+// distribuídas entre 10 desenvolvedores do mesmo projeto.
+public class BancadaProjetos {
+
+    private static final int DESENVOLVEDORES = 10;
+
+    private static final class Equipe {
+        final Projeto projeto = new Projeto("Projeto");
+        final List<Desenvolvedor> desenvolvedores = new ArrayList<>();
+        final List<Tarefa> tarefas = new ArrayList<>();
+        int[] sorteio;
+    }
+
+    private static Equipe gerar(int tarefas, Random aleatorio) {
+        Equipe equipe = new Equipe();
+        for (int i = 0; i < DESENVOLVEDORES; i++) {
+            equipe.desenvolvedores.add(new Desenvolvedor("Desenvolvedor " + i));
+        }
+        equipe.sorteio = new int[tarefas];
+        for (int i = 0; i < tarefas; i++) {
+            Tarefa tarefa = new Tarefa("Tarefa " + i, 1 + aleatorio.nextInt(40));
+            equipe.projeto.adicionarTarefa(tarefa);
+            equipe.tarefas.add(tarefa);
+            equipe.sorteio[i] = aleatorio.nextInt(DESENVOLVEDORES);
+        }
+        return equipe;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("projetos", args, 1000, 20_000);
+
+        bancada.medir("atribuir-tarefa", BancadaProjetos::gerar, equipe -> {
+            for (int i = 0; i < equipe.tarefas.size(); i++) {
+                equipe.projeto.atribuirTarefa(equipe.tarefas.get(i), equipe.desenvolvedores.get(equipe.sorteio[i]));
+            }
+            Bancada.consumir(equipe.projeto.calcularCargaTrabalho());
+            return equipe.tarefas.size();
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
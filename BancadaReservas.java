@@ -0,0 +1,58 @@
+package reservas;
+
+import bancada.Bancada;
+import reservas.SistemaReservas.Passageiro;
+import reservas.SistemaReservas.ResultadoReserva;
+import reservas.SistemaReservas.SolicitacaoReserva;
+import reservas.SistemaReservas.Voo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medições de reserva de assentos: uma chamada por passageiro
+ * (Passageiro.reservarAssento) contra o lote de reservarEmLote.
+ * Tamanho: número de passageiros, distribuídos em 100 voos.
+ */
+public class BancadaReservas {
+
+    private static final int VOOS = 100;
+
+    private static final class Demanda {
+        final List<Voo> voos = new ArrayList<>();
+        final List<SolicitacaoReserva> solicitacoes = new ArrayList<>();
+    }
+
+    private static Demanda gerar(int passageiros, Random aleatorio) {
+        Demanda demanda = new Demanda();
+        // Capacidade para ~90% da demanda, para que alguns voos lotem.
+        int capacidade = Math.max(1, passageiros * 9 / 10 / VOOS);
+        for (int i = 0; i < VOOS; i++) {
+            demanda.voos.add(new Voo("V" + i, capacidade));
+        }
+        for (int i = 0; i < passageiros; i++) {
+            Voo voo = demanda.voos.get(aleatorio.nextInt(VOOS));
+            demanda.solicitacoes.add(new SolicitacaoReserva(new Passageiro("P" + i), voo));
+        }
+        return demanda;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("reservas", args, 10_000, 200_000);
+
+        bancada.medir("reservar-assento", BancadaReservas::gerar, demanda -> {
+            for (SolicitacaoReserva solicitacao : demanda.solicitacoes) {
+                solicitacao.getPassageiro().reservarAssento(solicitacao.getVoo());
+            }
+            return demanda.solicitacoes.size();
+        });
+
+        bancada.medir("reservar-em-lote", BancadaReservas::gerar, demanda -> {
+            List<ResultadoReserva> resultados = SistemaReservas.reservarEmLote(demanda.solicitacoes);
+            return resultados.size();
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,45 @@
+package restaurantes;
+
+import bancada.Bancada;
+
+import java.util.Random;
+
+// Classe BancadaRestaurantes: mede Pedido.calcularTotal. Tamanho: itens no pedido.
+public class BancadaRestaurantes {
+
+    private static final int ITENS_SOMADOS = 10_000_000;
+
+    private static final class Comanda {
+        final Pedido pedido = new Pedido();
+        final int repeticoes;
+
+        Comanda(int itens) {
+            this.repeticoes = Math.max(1, ITENS_SOMADOS / Math.max(1, itens));
+        }
+    }
+
+    private static Comanda gerar(int itens, Random aleatorio) {
+        Prato[] cardapio = new Prato[50];
+        for (int i = 0; i < cardapio.length; i++) {
+            cardapio[i] = new Prato("Prato " + i, 10 + aleatorio.nextInt(9000) / 100.0);
+        }
+        Comanda comanda = new Comanda(itens);
+        for (int i = 0; i < itens; i++) {
+            comanda.pedido.adicionarPrato(cardapio[aleatorio.nextInt(cardapio.length)], 1 + aleatorio.nextInt(4));
+        }
+        return comanda;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("restaurantes", args, 10, 1000);
+
+        bancada.medir("calcular-total", BancadaRestaurantes::gerar, comanda -> {
+            for (int i = 0; i < comanda.repeticoes; i++) {
+                Bancada.consumir(comanda.pedido.calcularTotal());
+            }
+            return comanda.repeticoes;
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,45 @@
+package carros;
+
+import bancada.Bancada;
+import carros.Revenda.Carro;
+import carros.Revenda.Marca;
+
+import java.util.Random;
+
+/**
+ * Medição de Marca.calcularMediaPrecos. Tamanho: carros cadastrados na marca.
+ */
+public class BancadaRevenda {
+
+    private static final int CARROS_SOMADOS = 10_000_000;
+
+    private static final class Catalogo {
+        final Marca marca = new Marca("Marca");
+        final int repeticoes;
+
+        Catalogo(int carros) {
+            this.repeticoes = Math.max(1, CARROS_SOMADOS / Math.max(1, carros));
+        }
+    }
+
+    private static Catalogo gerar(int carros, Random aleatorio) {
+        Catalogo catalogo = new Catalogo(carros);
+        for (int i = 0; i < carros; i++) {
+            catalogo.marca.adicionarCarro(new Carro("Modelo " + i, catalogo.marca, 30_000 + aleatorio.nextInt(270_000)));
+        }
+        return catalogo;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bancada bancada = new Bancada("revenda", args, 10, 1000);
+
+        bancada.medir("calcular-media-precos", BancadaRevenda::gerar, catalogo -> {
+            for (int i = 0; i < catalogo.repeticoes; i++) {
+                Bancada.consumir(catalogo.marca.calcularMediaPrecos());
+            }
+            return catalogo.repeticoes;
+        });
+
+        System.exit(bancada.concluir() == 0 ? 0 : 1);
+    }
+}
@@ -1,9 +1,38 @@
 package biblioteca;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 class LivroIndisponivelException extends Exception {
@@ -36,15 +65,17 @@ class Autor {
     }
 }
 
-class Livro implements Serializable {
-
-    private static final long serialVersionUID = 1L;
+class Livro {
 
     private String titulo;
     private Autor autor;
     private int exemplares;
-    private int emprestados;
-    private List<Usuario> reservas;
+    private final AtomicInteger emprestados;
+    // Fila de reservas sem trava; o conjunto auxiliar evita reservas duplicadas.
+    private final Queue<Usuario> reservas;
+    private final Set<Usuario> reservados;
+    private int id = -1;
+    private Biblioteca biblioteca;
 
     public Livro(String titulo, Autor autor, int exemplares) {
         if (titulo == null || titulo.trim().isEmpty() || autor == null || exemplares <= 0) {
@@ -53,33 +84,85 @@ class Livro implements Serializable {
         this.titulo = titulo;
         this.autor = autor;
         this.exemplares = exemplares;
-        this.emprestados = 0;
-        this.reservas = new ArrayList<>();
+        this.emprestados = new AtomicInteger();
+        this.reservas = new ConcurrentLinkedQueue<>();
+        this.reservados = ConcurrentHashMap.newKeySet();
     }
 
     public boolean isDisponivel() {
-        return exemplares > emprestados;
+        return exemplares > emprestados.get();
     }
 
     public void emprestar() throws LivroIndisponivelException {
-        if (isDisponivel()) {
-            emprestados++;
-        } else {
+        if (!tentarEmprestar()) {
             throw new LivroIndisponivelException("Nenhum exemplar disponível para empréstimo.");
         }
     }
 
+    /**
+     * Retira um exemplar com CAS, sem travas; nunca ultrapassa o número de exemplares.
+     */
+    boolean tentarEmprestar() {
+        int atual;
+        do {
+            atual = emprestados.get();
+            if (atual >= exemplares) {
+                return false;
+            }
+        } while (!emprestados.compareAndSet(atual, atual + 1));
+        return true;
+    }
+
+    /**
+     * Tenta emprestar e, se não houver exemplar, entra na fila de reservas.
+     * A segunda tentativa e a reserva acontecem sob a trava do livro, a mesma
+     * usada por {@link #devolver()}, para que uma devolução simultânea não
+     * deixe o usuário na fila com um exemplar livre.
+     */
+    boolean emprestarOuReservar(Usuario usuario) {
+        if (tentarEmprestar()) {
+            return true;
+        }
+        synchronized (this) {
+            if (tentarEmprestar()) {
+                return true;
+            }
+            reservar(usuario);
+            return false;
+        }
+    }
+
     public void devolver() {
-        if (emprestados > 0) {
-            emprestados--;
+        synchronized (this) {
+            int atual;
+            do {
+                atual = emprestados.get();
+                if (atual == 0) {
+                    return;
+                }
+            } while (!emprestados.compareAndSet(atual, atual - 1));
             notificarReserva();
         }
+        if (biblioteca != null) {
+            biblioteca.publicarAvisos();
+        }
     }
 
     public void reservar(Usuario usuario) {
-        if (!reservas.contains(usuario)) {
-            reservas.add(usuario);
-            System.out.println("O usuário " + usuario.getNome() + " reservou o livro \"" + titulo + "\".");
+        Lock trava = Biblioteca.travaOperacao(biblioteca);
+        trava.lock();
+        try {
+            synchronized (this) {
+                if (reservados.add(usuario)) {
+                    reservas.add(usuario);
+                    if (biblioteca != null) {
+                        biblioteca.registrarReserva(this, usuario);
+                    }
+                    avisar(NotificacaoReserva.Tipo.RESERVADO, usuario);
+                }
+            }
+        } finally {
+            Biblioteca.concluirOperacao(biblioteca, trava);
         }
     }
 
@@ -88,55 +171,137 @@ class Livro implements Serializable {
     }
 
     public List<Usuario> getReservas() {
-        return reservas;
+        return new ArrayList<>(reservas);
+    }
+
+    public int getTotalReservas() {
+        return reservados.size();
+    }
+
+    public Autor getAutor() {
+        return autor;
+    }
+
+    public int getExemplares() {
+        return exemplares;
+    }
+
+    public int getEmprestados() {
+        return emprestados.get();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    void vincular(Biblioteca biblioteca, int id) {
+        this.biblioteca = biblioteca;
+        this.id = id;
+    }
+
+    void restaurarEmprestados(int emprestados) {
+        this.emprestados.set(emprestados);
+    }
+
+    /**
+     * Reinsere uma reserva vinda do snapshot ou do diário, sem notificações.
+     */
+    void restaurarReserva(Usuario usuario) {
+        if (reservados.add(usuario)) {
+            reservas.add(usuario);
+        }
+    }
+
+    /**
+     * Reaplica a saída de um usuário da fila, registrada no diário.
+     */
+    void restaurarNotificacao(Usuario usuario) {
+        if (reservados.remove(usuario)) {
+            reservas.remove(usuario);
+        }
+    }
+
+    /**
+     * Entrega o aviso pelo barramento assíncrono da biblioteca depois que a
+     * operação soltar as travas; sem biblioteca, imprime na hora.
+     */
+    private void avisar(NotificacaoReserva.Tipo tipo, Usuario usuario) {
+        NotificacaoReserva notificacao = new NotificacaoReserva(tipo, this, usuario);
+        if (biblioteca != null) {
+            biblioteca.notificar(notificacao);
+        } else {
+            System.out.println(notificacao.getMensagem());
+        }
     }
 
     private void notificarReserva() {
-        if (!reservas.isEmpty() && isDisponivel()) {
-            Usuario proximoUsuario = reservas.remove(0);
-            System.out.println("O livro \"" + titulo + "\" está disponível para " + proximoUsuario.getNome());
+        if (isDisponivel()) {
+            Usuario proximoUsuario = reservas.poll();
+            if (proximoUsuario != null) {
+                reservados.remove(proximoUsuario);
+                if (biblioteca != null) {
+                    biblioteca.registrarNotificacao(this, proximoUsuario);
+                }
+                avisar(NotificacaoReserva.Tipo.DISPONIVEL, proximoUsuario);
+            }
         }
     }
 }
 
-class Usuario implements Serializable {
-
-    private static final long serialVersionUID = 1L;
+class Usuario {
 
     private String nome;
-    private List<Emprestimo> emprestimos;
     private long multaAcumulada;
+    private int id = -1;
+    private Biblioteca biblioteca;
 
     public Usuario(String nome) {
         if (nome == null || nome.trim().isEmpty()) {
             throw new IllegalArgumentException("Nome do usuário não pode ser nulo ou vazio.");
         }
         this.nome = nome;
-        this.emprestimos = new ArrayList<>();
         this.multaAcumulada = 0;
     }
 
     public void emprestarLivro(Livro livro, Biblioteca biblioteca) throws LivroIndisponivelException {
-        if (livro.isDisponivel()) {
-            Emprestimo emprestimo = new Emprestimo(this, livro);
-            biblioteca.registrarEmprestimo(emprestimo);
-            livro.emprestar();
-            emprestimos.add(emprestimo);
-            System.out.println("O usuário " + nome + " emprestou o livro \"" + livro.getTitulo() + "\".");
-        } else {
-            livro.reservar(this);
+        Lock trava = Biblioteca.travaOperacao(biblioteca);
+        trava.lock();
+        try {
+            // Confere o cadastro antes de tomar o exemplar; se o registro falhar
+            // mesmo assim (diário), o exemplar volta para o acervo.
+            RegistroEmprestimos.chave(this, livro);
+            if (livro.emprestarOuReservar(this)) {
+                try {
+                    biblioteca.registrarEmprestimo(new Emprestimo(this, livro, biblioteca.hoje()));
+                } catch (RuntimeException e) {
+                    livro.devolver();
+                    throw e;
+                }
+                System.out.println("O usuário " + nome + " emprestou o livro \"" + livro.getTitulo() + "\".");
+            }
+        } finally {
+            Biblioteca.concluirOperacao(biblioteca, trava);
         }
     }
 
     public void devolverLivro(Livro livro, Biblioteca biblioteca) throws LivroNaoEmprestadoException {
-        for (Emprestimo emprestimo : emprestimos) {
-            if (emprestimo.getLivro().equals(livro)) {
-                biblioteca.registrarDevolucao(emprestimo);
-                livro.devolver();
-                emprestimos.remove(emprestimo);
-                System.out.println("O usuário " + nome + " devolveu o livro \"" + livro.getTitulo() + "\".");
-                return;
+        Lock trava = Biblioteca.travaOperacao(biblioteca);
+        trava.lock();
+        try {
+            Emprestimo emprestimo;
+            while ((emprestimo = biblioteca.buscarEmprestimo(this, livro)) != null) {
+                // Só quem retira o empréstimo do registro devolve o exemplar,
+                // mesmo que duas threads devolvam o mesmo livro ao mesmo tempo.
+                synchronized (livro) {
+                    if (biblioteca.concluirDevolucao(emprestimo)) {
+                        livro.devolver();
+                        System.out.println("O usuário " + nome + " devolveu o livro \"" + livro.getTitulo() + "\".");
+                        return;
+                    }
+                }
             }
+        } finally {
+            Biblioteca.concluirOperacao(biblioteca, trava);
         }
         throw new LivroNaoEmprestadoException("Este livro não está emprestado a este usuário.");
     }
@@ -145,50 +310,89 @@ class Usuario implements Serializable {
         return nome;
     }
 
-    public long getMultaAcumulada() {
+    public synchronized long getMultaAcumulada() {
         return multaAcumulada;
     }
 
-    public void adicionarMulta(long multa) {
+    int getId() {
+        return id;
+    }
+
+    void vincular(Biblioteca biblioteca, int id) {
+        this.biblioteca = biblioteca;
+        this.id = id;
+    }
+
+    public synchronized void adicionarMulta(long multa) {
         this.multaAcumulada += multa;
     }
 
     public void pagarMulta(long valor) {
-        if (valor <= multaAcumulada) {
-            this.multaAcumulada -= valor;
-            System.out.println("O usuário " + nome + " pagou " + valor + " de multa.");
-        } else {
-            System.out.println("Valor de pagamento maior do que a multa acumulada.");
+        Lock trava = Biblioteca.travaOperacao(biblioteca);
+        trava.lock();
+        try {
+            synchronized (this) {
+                if (valor <= multaAcumulada) {
+                    this.multaAcumulada -= valor;
+                    if (biblioteca != null) {
+                        biblioteca.registrarPagamento(this, valor);
+                    }
+                    System.out.println("O usuário " + nome + " pagou " + valor + " de multa.");
+                } else {
+                    System.out.println("Valor de pagamento maior do que a multa acumulada.");
+                }
+            }
+        } finally {
+            trava.unlock();
         }
     }
 }
 
-class Emprestimo implements Serializable {
+class Emprestimo {
 
-    private static final long serialVersionUID = 1L;
+    static final int PRAZO_DIAS = 7;
+    static final long MULTA_DIARIA = 2;
 
     private Usuario usuario;
     private Livro livro;
     private LocalDate dataEmprestimo;
+    // Próximo empréstimo do mesmo usuário para o mesmo livro (vários exemplares).
+    volatile Emprestimo seguinte;
 
     public Emprestimo(Usuario usuario, Livro livro) {
+        this(usuario, livro, LocalDate.now());
+    }
+
+    Emprestimo(Usuario usuario, Livro livro, LocalDate dataEmprestimo) {
         this.usuario = usuario;
         this.livro = livro;
-        this.dataEmprestimo = LocalDate.now();
+        this.dataEmprestimo = dataEmprestimo;
     }
 
     public boolean isEmAtraso() {
-        return LocalDate.now().isAfter(dataEmprestimo.plusDays(7));
+        return isEmAtraso(LocalDate.now());
+    }
+
+    public boolean isEmAtraso(LocalDate hoje) {
+        return hoje.isAfter(getVencimento());
     }
 
     public long calcularMulta() {
-        if (isEmAtraso()) {
-            long diasAtraso = ChronoUnit.DAYS.between(dataEmprestimo.plusDays(7), LocalDate.now());
-            return diasAtraso * 2;  // Multa de 2 unidades por dia de atraso
+        return calcularMulta(LocalDate.now());
+    }
+
+    public long calcularMulta(LocalDate hoje) {
+        if (isEmAtraso(hoje)) {
+            long diasAtraso = ChronoUnit.DAYS.between(getVencimento(), hoje);
+            return diasAtraso * MULTA_DIARIA;  // Multa de 2 unidades por dia de atraso
         }
         return 0;
     }
 
+    public LocalDate getVencimento() {
+        return dataEmprestimo.plusDays(PRAZO_DIAS);
+    }
+
     public Livro getLivro() {
         return livro;
     }
@@ -196,84 +400,1828 @@ class Emprestimo implements Serializable {
     public Usuario getUsuario() {
         return usuario;
     }
+
+    public LocalDate getDataEmprestimo() {
+        return dataEmprestimo;
+    }
 }
 
-public class Biblioteca implements Serializable {
+/**
+ * Índice dos empréstimos em aberto pela chave (id do usuário, id do livro).
+ * Inserção, busca e remoção são O(1) e seguras entre threads; empréstimos
+ * repetidos do mesmo livro pelo mesmo usuário ficam encadeados do mais
+ * antigo para o mais recente, alterados apenas dentro de {@code compute}.
+ */
+class RegistroEmprestimos implements Iterable<Emprestimo> {
 
-    private static final long serialVersionUID = 1L;
+    private final ConcurrentMap<Long, Emprestimo> porChave = new ConcurrentHashMap<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
 
-    private List<Livro> livros;
-    private List<Emprestimo> emprestimos;
-    private List<Usuario> usuarios;
+    static long chave(Usuario usuario, Livro livro) {
+        if (usuario.getId() < 0 || livro.getId() < 0) {
+            throw new IllegalStateException("Livro e usuário devem estar cadastrados na biblioteca.");
+        }
+        return ((long) usuario.getId() << 32) | (livro.getId() & 0xFFFFFFFFL);
+    }
 
-    public Biblioteca() {
-        this.livros = new ArrayList<>();
-        this.emprestimos = new ArrayList<>();
-        this.usuarios = new ArrayList<>();
+    void adicionar(Emprestimo emprestimo) {
+        emprestimo.seguinte = null;
+        porChave.compute(chave(emprestimo.getUsuario(), emprestimo.getLivro()), (chave, primeiro) -> {
+            if (primeiro == null) {
+                return emprestimo;
+            }
+            Emprestimo ultimo = primeiro;
+            while (ultimo.seguinte != null) {
+                ultimo = ultimo.seguinte;
+            }
+            ultimo.seguinte = emprestimo;
+            return primeiro;
+        });
+        tamanho.incrementAndGet();
     }
 
-    public void adicionarLivro(Livro livro) {
-        livros.add(livro);
+    Emprestimo buscar(Usuario usuario, Livro livro) {
+        if (usuario.getId() < 0 || livro.getId() < 0) {
+            return null;
+        }
+        return porChave.get(chave(usuario, livro));
     }
 
-    public void adicionarUsuario(Usuario usuario) {
-        usuarios.add(usuario);
+    /**
+     * Remove o empréstimo; retorna {@code false} se outra thread já o removeu.
+     */
+    boolean remover(Emprestimo emprestimo) {
+        boolean[] removido = new boolean[1];
+        porChave.computeIfPresent(chave(emprestimo.getUsuario(), emprestimo.getLivro()), (chave, primeiro) -> {
+            if (primeiro == emprestimo) {
+                removido[0] = true;
+                return emprestimo.seguinte;
+            }
+            for (Emprestimo anterior = primeiro; anterior.seguinte != null; anterior = anterior.seguinte) {
+                if (anterior.seguinte == emprestimo) {
+                    anterior.seguinte = emprestimo.seguinte;
+                    removido[0] = true;
+                    break;
+                }
+            }
+            return primeiro;
+        });
+        if (removido[0]) {
+            emprestimo.seguinte = null;
+            tamanho.decrementAndGet();
+        }
+        return removido[0];
     }
 
-    public void registrarEmprestimo(Emprestimo emprestimo) {
-        emprestimos.add(emprestimo);
+    int tamanho() {
+        return tamanho.get();
     }
 
-    public void registrarDevolucao(Emprestimo emprestimo) {
-        if (emprestimo.isEmAtraso()) {
-            long multa = emprestimo.calcularMulta();
-            System.out.println("O usuário " + emprestimo.getUsuario().getNome() + " está em atraso. Multa: " + multa);
-            emprestimo.getUsuario().adicionarMulta(multa);
+    @Override
+    public Iterator<Emprestimo> iterator() {
+        List<Emprestimo> todos = new ArrayList<>(tamanho());
+        for (Emprestimo emprestimo : porChave.values()) {
+            for (Emprestimo e = emprestimo; e != null; e = e.seguinte) {
+                todos.add(e);
+            }
         }
-        emprestimos.remove(emprestimo);
+        return todos.iterator();
     }
+}
 
-    public List<String> listarLivrosPopulares() {
-        Map<String, Integer> popularidade = new HashMap<>();
-        for (Livro livro : livros) {
-            popularidade.put(livro.getTitulo(), livro.getReservas().size());
-        }
-        return popularidade.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .limit(5)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-    }
+/**
+ * Apuração periódica de multas dos empréstimos em aberto.
+ * Empréstimos ainda no prazo ficam numa agenda ordenada por dia de
+ * vencimento; cada apuração retira só os que venceram desde a anterior.
+ * Os já atrasados ficam agrupados por usuário, que recebe a multa de
+ * todos eles de uma vez. Como a multa depende só das datas, o que já foi
+ * cobrado de um empréstimo é sempre {@code calcularMulta(ultimaApuracao)}.
+ */
+class ApuracaoMultas {
 
-    public void exibirStatusMultas() {
-        for (Usuario usuario : usuarios) {
-            System.out.println("Usuário: " + usuario.getNome() + " - Multa acumulada: " + usuario.getMultaAcumulada());
+    static final long NUNCA = Long.MIN_VALUE;
+
+    static final class Resultado {
+        private final LocalDate data;
+        private final List<Emprestimo> novosAtrasos;
+        private final Map<Usuario, Long> multas;
+
+        Resultado(LocalDate data, List<Emprestimo> novosAtrasos, Map<Usuario, Long> multas) {
+            this.data = data;
+            this.novosAtrasos = novosAtrasos;
+            this.multas = multas;
+        }
+
+        public LocalDate getData() {
+            return data;
+        }
+
+        public List<Emprestimo> getNovosAtrasos() {
+            return novosAtrasos;
+        }
+
+        public Map<Usuario, Long> getMultas() {
+            return multas;
+        }
+
+        public long getTotal() {
+            return multas.values().stream().mapToLong(Long::longValue).sum();
         }
     }
 
-    public void salvarDados() throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("biblioteca.dat"))) {
-            oos.writeObject(livros);
-            oos.writeObject(usuarios);
-            oos.writeObject(emprestimos);
+    private final TreeMap<Long, Set<Emprestimo>> vencimentos = new TreeMap<>();
+    private final Map<Usuario, Set<Emprestimo>> emAtraso = new HashMap<>();
+    private long ultimaApuracao = NUNCA;
+
+    synchronized void acompanhar(Emprestimo emprestimo) {
+        long vencimento = emprestimo.getVencimento().toEpochDay();
+        if (ultimaApuracao != NUNCA && vencimento < ultimaApuracao) {
+            emAtraso.computeIfAbsent(emprestimo.getUsuario(), u -> new HashSet<>()).add(emprestimo);
+        } else {
+            vencimentos.computeIfAbsent(vencimento, d -> new HashSet<>()).add(emprestimo);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void carregarDados() throws IOException, ClassNotFoundException {
-        File file = new File("biblioteca.dat");
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                livros = (List<Livro>) ois.readObject();
-                usuarios = (List<Usuario>) ois.readObject();
-                emprestimos = (List<Emprestimo>) ois.readObject();
+    /**
+     * Deixa de acompanhar o empréstimo e retorna a multa ainda não apurada.
+     */
+    synchronized long encerrar(Emprestimo emprestimo, LocalDate hoje) {
+        long vencimento = emprestimo.getVencimento().toEpochDay();
+        Set<Emprestimo> doDia = vencimentos.get(vencimento);
+        if (doDia != null && doDia.remove(emprestimo)) {
+            if (doDia.isEmpty()) {
+                vencimentos.remove(vencimento);
             }
         } else {
-            System.out.println("Arquivo de dados não encontrado. Iniciando com dados vazios.");
-            livros = new ArrayList<>();
-            usuarios = new ArrayList<>();
-            emprestimos = new ArrayList<>();
+            Set<Emprestimo> doUsuario = emAtraso.get(emprestimo.getUsuario());
+            if (doUsuario != null && doUsuario.remove(emprestimo) && doUsuario.isEmpty()) {
+                emAtraso.remove(emprestimo.getUsuario());
+            }
+        }
+        long jaApurada = ultimaApuracao == NUNCA ? 0 : emprestimo.calcularMulta(LocalDate.ofEpochDay(ultimaApuracao));
+        return Math.max(0, emprestimo.calcularMulta(hoje) - jaApurada);
+    }
+
+    synchronized Resultado apurar(LocalDate hoje) {
+        long dia = hoje.toEpochDay();
+        Map<Usuario, Long> multas = new HashMap<>();
+        List<Emprestimo> novosAtrasos = new ArrayList<>();
+        if (ultimaApuracao != NUNCA && dia <= ultimaApuracao) {
+            return new Resultado(hoje, novosAtrasos, multas);
+        }
+        if (ultimaApuracao != NUNCA) {
+            long dias = dia - ultimaApuracao;
+            for (Map.Entry<Usuario, Set<Emprestimo>> entrada : emAtraso.entrySet()) {
+                multas.put(entrada.getKey(), Emprestimo.MULTA_DIARIA * dias * entrada.getValue().size());
+            }
+        }
+        NavigableMap<Long, Set<Emprestimo>> vencidos = vencimentos.headMap(dia, false);
+        for (Set<Emprestimo> doDia : vencidos.values()) {
+            for (Emprestimo emprestimo : doDia) {
+                multas.merge(emprestimo.getUsuario(), emprestimo.calcularMulta(hoje), Long::sum);
+                emAtraso.computeIfAbsent(emprestimo.getUsuario(), u -> new HashSet<>()).add(emprestimo);
+                novosAtrasos.add(emprestimo);
+            }
+        }
+        vencidos.clear();
+        ultimaApuracao = dia;
+        return new Resultado(hoje, novosAtrasos, multas);
+    }
+
+    synchronized List<Emprestimo> listarEmAtraso() {
+        List<Emprestimo> atrasados = new ArrayList<>();
+        emAtraso.values().forEach(atrasados::addAll);
+        return atrasados;
+    }
+
+    synchronized long getUltimaApuracao() {
+        return ultimaApuracao;
+    }
+
+    synchronized void reiniciar(long ultimaApuracao, Iterable<Emprestimo> abertos) {
+        vencimentos.clear();
+        emAtraso.clear();
+        this.ultimaApuracao = ultimaApuracao;
+        for (Emprestimo emprestimo : abertos) {
+            acompanhar(emprestimo);
+        }
+    }
+}
+
+/**
+ * Índice invertido de títulos e nomes de autores.
+ * Os termos são normalizados sem acentos e em minúsculas ("Memórias" e
+ * "memorias" são o mesmo termo) e ficam num mapa ordenado, de modo que
+ * todos os termos com um prefixo formam um intervalo contíguo. Cada termo
+ * aponta para a lista crescente de ids dos livros que o contêm.
+ */
+class IndiceBusca {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Lista crescente de ids sem boxing; livros são indexados em ordem de id.
+     */
+    private static final class ListaIds {
+        private int[] ids = new int[2];
+        private int tamanho;
+
+        void adicionar(int id) {
+            if (tamanho > 0 && ids[tamanho - 1] == id) {
+                return;
+            }
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            ids[tamanho++] = id;
+        }
+    }
+
+    private final TreeMap<String, ListaIds> termos = new TreeMap<>();
+
+    static List<String> termosDe(String texto) {
+        String normalizado = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        List<String> termos = new ArrayList<>();
+        for (String termo : SEPARADORES.split(normalizado.toLowerCase(Locale.ROOT))) {
+            if (!termo.isEmpty()) {
+                termos.add(termo);
+            }
+        }
+        return termos;
+    }
+
+    void indexar(Livro livro) {
+        Set<String> doLivro = new HashSet<>(termosDe(livro.getTitulo()));
+        doLivro.addAll(termosDe(livro.getAutor().getNome()));
+        for (String termo : doLivro) {
+            termos.computeIfAbsent(termo, t -> new ListaIds()).adicionar(livro.getId());
+        }
+    }
+
+    /**
+     * Ids dos livros que contêm todos os termos da consulta; o último termo
+     * vale como prefixo, para autocompletar enquanto se digita. A lista mais
+     * curta conduz a interseção e as demais só são consultadas por busca
+     * binária, então o custo cresce com o resultado, não com o acervo.
+     */
+    int[] buscar(String consulta, int limite) {
+        List<String> consultados = termosDe(consulta);
+        if (consultados.isEmpty()) {
+            return new int[0];
+        }
+        List<Grupo> grupos = new ArrayList<>(consultados.size());
+        for (int i = 0; i < consultados.size() - 1; i++) {
+            ListaIds lista = termos.get(consultados.get(i));
+            if (lista == null) {
+                return new int[0];
+            }
+            grupos.add(new Grupo(Collections.singletonList(lista)));
+        }
+        String prefixo = consultados.get(consultados.size() - 1);
+        Grupo porPrefixo = new Grupo(new ArrayList<>(
+                termos.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false).values()));
+        if (porPrefixo.total == 0) {
+            return new int[0];
+        }
+        grupos.add(porPrefixo);
+        grupos.sort(Comparator.comparingLong(grupo -> grupo.total));
+
+        Grupo condutor = grupos.get(0);
+        int[] resultado = new int[(int) Math.min(condutor.total, limite)];
+        int total = 0;
+        PrimitiveIterator.OfInt candidatos = condutor.idsEmOrdem();
+        while (candidatos.hasNext() && total < resultado.length) {
+            int id = candidatos.nextInt();
+            boolean emTodos = true;
+            for (int j = 1; j < grupos.size() && emTodos; j++) {
+                emTodos = grupos.get(j).contem(id);
+            }
+            if (emTodos) {
+                resultado[total++] = id;
+            }
+        }
+        return Arrays.copyOf(resultado, total);
+    }
+
+    /**
+     * Termos do índice que começam com o prefixo, em ordem alfabética.
+     */
+    List<String> completar(String prefixo, int limite) {
+        List<String> consultados = termosDe(prefixo);
+        if (consultados.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String inicio = consultados.get(consultados.size() - 1);
+        List<String> resultado = new ArrayList<>();
+        for (String termo : termos.subMap(inicio, true, inicio + Character.MAX_VALUE, false).keySet()) {
+            if (resultado.size() == limite) {
+                break;
+            }
+            resultado.add(termo);
+        }
+        return resultado;
+    }
+
+    void limpar() {
+        termos.clear();
+    }
+
+    /**
+     * Livros de um termo exato ou, no caso do prefixo, a união dos termos
+     * que começam com ele, sem copiar as listas.
+     */
+    private static final class Grupo {
+        private static final int MAXIMO_BUSCAS = 16;
+
+        final List<ListaIds> listas;
+        final long total;
+        private BitSet uniao;
+
+        Grupo(List<ListaIds> listas) {
+            this.listas = listas;
+            long soma = 0;
+            for (ListaIds lista : listas) {
+                soma += lista.tamanho;
+            }
+            this.total = soma;
+        }
+
+        boolean contem(int id) {
+            if (listas.size() > MAXIMO_BUSCAS) {
+                if (uniao == null) {
+                    uniao = new BitSet();
+                    for (ListaIds lista : listas) {
+                        for (int i = 0; i < lista.tamanho; i++) {
+                            uniao.set(lista.ids[i]);
+                        }
+                    }
+                }
+                return uniao.get(id);
+            }
+            for (ListaIds lista : listas) {
+                if (Arrays.binarySearch(lista.ids, 0, lista.tamanho, id) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Ids em ordem crescente e sem repetição, intercalando as listas.
+         */
+        PrimitiveIterator.OfInt idsEmOrdem() {
+            PriorityQueue<int[]> cursores = new PriorityQueue<>(Comparator.comparingInt(
+                    (int[] cursor) -> listas.get(cursor[0]).ids[cursor[1]]));
+            for (int i = 0; i < listas.size(); i++) {
+                if (listas.get(i).tamanho > 0) {
+                    cursores.add(new int[] {i, 0});
+                }
+            }
+            return new PrimitiveIterator.OfInt() {
+                private int ultimo = -1;
+
+                @Override
+                public boolean hasNext() {
+                    while (!cursores.isEmpty() && atual(cursores.peek()) == ultimo) {
+                        avancar(cursores.poll());
+                    }
+                    return !cursores.isEmpty();
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int[] cursor = cursores.poll();
+                    ultimo = atual(cursor);
+                    avancar(cursor);
+                    return ultimo;
+                }
+
+                private int atual(int[] cursor) {
+                    return listas.get(cursor[0]).ids[cursor[1]];
+                }
+
+                private void avancar(int[] cursor) {
+                    if (++cursor[1] < listas.get(cursor[0]).tamanho) {
+                        cursores.add(cursor);
+                    }
+                }
+            };
+        }
+    }
+}
+
+/**
+ * Ranking de livros por pontuação, atualizado a cada evento de circulação.
+ * A ordem fica num skip list, então o top-K sai em O(K) e cada ajuste
+ * custa O(log n); empates são desfeitos pelo id do livro.
+ */
+class RankingLivros {
+
+    private static final class Entrada {
+        final Livro livro;
+        final double pontuacao;
+
+        Entrada(Livro livro, double pontuacao) {
+            this.livro = livro;
+            this.pontuacao = pontuacao;
+        }
+    }
+
+    private static final Comparator<Entrada> ORDEM = Comparator
+            .comparingDouble((Entrada e) -> e.pontuacao).reversed()
+            .thenComparingInt(e -> e.livro.getId());
+
+    private final ConcurrentSkipListSet<Entrada> ordem = new ConcurrentSkipListSet<>(ORDEM);
+    private final ConcurrentMap<Livro, Entrada> atual = new ConcurrentHashMap<>();
+
+    void ajustar(Livro livro, double delta) {
+        atual.compute(livro, (l, antiga) -> {
+            double base = 0;
+            if (antiga != null) {
+                ordem.remove(antiga);
+                base = antiga.pontuacao;
+            }
+            Entrada nova = new Entrada(l, base + delta);
+            ordem.add(nova);
+            return nova;
+        });
+    }
+
+    /**
+     * Multiplica todas as pontuações pelo mesmo fator; a ordem não muda.
+     */
+    void reescalar(double fator) {
+        for (Livro livro : atual.keySet()) {
+            atual.computeIfPresent(livro, (l, antiga) -> {
+                ordem.remove(antiga);
+                Entrada nova = new Entrada(l, antiga.pontuacao * fator);
+                ordem.add(nova);
+                return nova;
+            });
+        }
+    }
+
+    double pontuacao(Livro livro) {
+        Entrada entrada = atual.get(livro);
+        return entrada == null ? 0 : entrada.pontuacao;
+    }
+
+    List<Livro> topo(int k) {
+        List<Livro> resultado = new ArrayList<>(Math.min(k, atual.size()));
+        for (Entrada entrada : ordem) {
+            if (resultado.size() == k) {
+                break;
+            }
+            resultado.add(entrada.livro);
         }
+        return resultado;
+    }
+
+    void limpar() {
+        atual.clear();
+        ordem.clear();
+    }
+}
+
+/**
+ * Popularidade recente com decaimento exponencial ("em alta nesta semana").
+ * Cada evento soma e^(λ·(t − origem)) em vez de envelhecer todas as
+ * pontuações a cada instante: como todas decaem no mesmo ritmo, a ordem
+ * se mantém e só é preciso reescalar quando o expoente fica grande.
+ */
+class PopularidadeRecente {
+
+    private static final double EXPOENTE_MAXIMO = 500;
+
+    private final RankingLivros ranking = new RankingLivros();
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private final Clock relogio;
+    private final double lambdaPorMilli;
+    private volatile long origem;
+
+    PopularidadeRecente(Clock relogio, Duration meiaVida) {
+        this.relogio = relogio;
+        this.lambdaPorMilli = Math.log(2) / meiaVida.toMillis();
+        this.origem = relogio.millis();
+    }
+
+    void registrarEvento(Livro livro) {
+        long agora = relogio.millis();
+        if (lambdaPorMilli * (agora - origem) > EXPOENTE_MAXIMO) {
+            renormalizar(agora);
+        }
+        trava.readLock().lock();
+        try {
+            ranking.ajustar(livro, Math.exp(lambdaPorMilli * (agora - origem)));
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pontuação atual, já decaída: cada evento vale 1 no instante em que ocorre.
+     */
+    double pontuacao(Livro livro) {
+        trava.readLock().lock();
+        try {
+            return ranking.pontuacao(livro) * Math.exp(-lambdaPorMilli * (relogio.millis() - origem));
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    List<Livro> topo(int k) {
+        return ranking.topo(k);
+    }
+
+    void limpar() {
+        trava.writeLock().lock();
+        try {
+            ranking.limpar();
+            origem = relogio.millis();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    private void renormalizar(long agora) {
+        trava.writeLock().lock();
+        try {
+            if (lambdaPorMilli * (agora - origem) > EXPOENTE_MAXIMO) {
+                ranking.reescalar(Math.exp(-lambdaPorMilli * (agora - origem)));
+                origem = agora;
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+}
+
+/**
+ * Aviso gerado pela fila de reservas de um livro.
+ */
+class NotificacaoReserva {
+
+    enum Tipo {
+        RESERVADO,
+        DISPONIVEL
+    }
+
+    private final Tipo tipo;
+    private final Livro livro;
+    private final Usuario usuario;
+    private final long publicadaEm;
+
+    NotificacaoReserva(Tipo tipo, Livro livro, Usuario usuario) {
+        this.tipo = tipo;
+        this.livro = livro;
+        this.usuario = usuario;
+        this.publicadaEm = System.nanoTime();
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Livro getLivro() {
+        return livro;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    long getPublicadaEm() {
+        return publicadaEm;
+    }
+
+    public String getMensagem() {
+        if (tipo == Tipo.RESERVADO) {
+            return "O usuário " + usuario.getNome() + " reservou o livro \"" + livro.getTitulo() + "\".";
+        }
+        return "O livro \"" + livro.getTitulo() + "\" está disponível para " + usuario.getNome();
+    }
+}
+
+interface AssinanteNotificacoes {
+
+    /**
+     * Recebe um lote de notificações, na ordem em que foram publicadas.
+     */
+    void receber(List<NotificacaoReserva> lote);
+}
+
+/**
+ * Barramento assíncrono de notificações de reserva.
+ * Vários produtores publicam num buffer circular limitado; uma única thread
+ * consumidora retira lotes e os entrega a cada assinante. Com o buffer
+ * cheio, o produtor espera ({@code BLOQUEAR}) ou a notificação é descartada
+ * ({@code DESCARTAR}); ambos os casos são contados nas métricas.
+ */
+class BarramentoNotificacoes implements AutoCloseable {
+
+    enum PoliticaCheio {
+        BLOQUEAR,
+        DESCARTAR
+    }
+
+    static final class Metricas {
+        private final long publicadas;
+        private final long entregues;
+        private final long descartadas;
+        private final long esperasPorEspaco;
+        private final long falhasAssinantes;
+        private final long pendentes;
+        private final long atrasoMedioMicros;
+        private final long atrasoMaximoMicros;
+
+        Metricas(long publicadas, long entregues, long descartadas, long esperasPorEspaco,
+                 long falhasAssinantes, long pendentes, long atrasoMedioMicros, long atrasoMaximoMicros) {
+            this.publicadas = publicadas;
+            this.entregues = entregues;
+            this.descartadas = descartadas;
+            this.esperasPorEspaco = esperasPorEspaco;
+            this.falhasAssinantes = falhasAssinantes;
+            this.pendentes = pendentes;
+            this.atrasoMedioMicros = atrasoMedioMicros;
+            this.atrasoMaximoMicros = atrasoMaximoMicros;
+        }
+
+        public long getPublicadas() {
+            return publicadas;
+        }
+
+        public long getEntregues() {
+            return entregues;
+        }
+
+        public long getDescartadas() {
+            return descartadas;
+        }
+
+        public long getEsperasPorEspaco() {
+            return esperasPorEspaco;
+        }
+
+        public long getFalhasAssinantes() {
+            return falhasAssinantes;
+        }
+
+        public long getPendentes() {
+            return pendentes;
+        }
+
+        public long getAtrasoMedioMicros() {
+            return atrasoMedioMicros;
+        }
+
+        public long getAtrasoMaximoMicros() {
+            return atrasoMaximoMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("publicadas=%d entregues=%d descartadas=%d esperas=%d falhas=%d pendentes=%d "
+                            + "atrasoMedio=%dus atrasoMaximo=%dus", publicadas, entregues, descartadas,
+                    esperasPorEspaco, falhasAssinantes, pendentes, atrasoMedioMicros, atrasoMaximoMicros);
+        }
+    }
+
+    private static final long ESPERA_POR_ESPACO_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final AtomicReferenceArray<NotificacaoReserva> posicoes;
+    private final int mascara;
+    private final int tamanhoLote;
+    private final PoliticaCheio politica;
+    private final List<AssinanteNotificacoes> assinantes = new CopyOnWriteArrayList<>();
+    private final AtomicLong proximaEscrita = new AtomicLong();
+    private volatile long proximaLeitura;
+    private volatile boolean encerrando;
+    // Ligado pelo consumidor antes de dormir; o produtor só o acorda se o vir.
+    private volatile boolean consumidorParado;
+    private final Thread consumidor;
+
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder esperasPorEspaco = new LongAdder();
+    // Escritos só pela thread consumidora.
+    private volatile long entregues;
+    private volatile long falhasAssinantes;
+    private volatile long somaAtrasoNanos;
+    private volatile long atrasoMaximoNanos;
+
+    BarramentoNotificacoes(int capacidade, int tamanhoLote, PoliticaCheio politica) {
+        if (capacidade <= 0 || Integer.bitCount(capacidade) != 1 || tamanhoLote <= 0) {
+            throw new IllegalArgumentException("Capacidade deve ser potência de 2 e o lote, positivo.");
+        }
+        this.posicoes = new AtomicReferenceArray<>(capacidade);
+        this.mascara = capacidade - 1;
+        this.tamanhoLote = tamanhoLote;
+        this.politica = Objects.requireNonNull(politica, "Política não pode ser nula");
+        this.consumidor = new Thread(this::consumir, "biblioteca-notificacoes");
+        this.consumidor.setDaemon(true);
+        this.consumidor.start();
+    }
+
+    public void assinar(AssinanteNotificacoes assinante) {
+        assinantes.add(Objects.requireNonNull(assinante, "Assinante não pode ser nulo"));
+    }
+
+    public void cancelarAssinatura(AssinanteNotificacoes assinante) {
+        assinantes.remove(assinante);
+    }
+
+    /**
+     * Publica a notificação; retorna {@code false} se ela foi descartada, por
+     * buffer cheio ou barramento já encerrado.
+     */
+    public boolean publicar(NotificacaoReserva notificacao) {
+        if (encerrando) {
+            descartadas.increment();
+            return false;
+        }
+        boolean esperou = false;
+        long sequencia;
+        while (true) {
+            sequencia = proximaEscrita.get();
+            if (sequencia - proximaLeitura > mascara) {
+                if (politica == PoliticaCheio.DESCARTAR) {
+                    descartadas.increment();
+                    return false;
+                }
+                if (!esperou) {
+                    esperasPorEspaco.increment();
+                    esperou = true;
+                }
+                LockSupport.parkNanos(ESPERA_POR_ESPACO_NANOS);
+            } else if (proximaEscrita.compareAndSet(sequencia, sequencia + 1)) {
+                break;
+            }
+        }
+        posicoes.set((int) (sequencia & mascara), notificacao);
+        publicadas.increment();
+        if (consumidorParado) {
+            LockSupport.unpark(consumidor);
+        }
+        return true;
+    }
+
+    public Metricas getMetricas() {
+        long totalEntregues = entregues;
+        return new Metricas(publicadas.sum(), totalEntregues, descartadas.sum(), esperasPorEspaco.sum(),
+                falhasAssinantes, proximaEscrita.get() - proximaLeitura,
+                totalEntregues == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(somaAtrasoNanos / totalEntregues),
+                TimeUnit.NANOSECONDS.toMicros(atrasoMaximoNanos));
+    }
+
+    /**
+     * Para de aceitar notificações e espera a entrega das pendentes.
+     */
+    @Override
+    public void close() {
+        encerrando = true;
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consumir() {
+        List<NotificacaoReserva> lote = new ArrayList<>(tamanhoLote);
+        long leitura = 0;
+        while (true) {
+            NotificacaoReserva notificacao;
+            while (lote.size() < tamanhoLote
+                    && (notificacao = posicoes.get((int) (leitura & mascara))) != null) {
+                posicoes.set((int) (leitura & mascara), null);
+                lote.add(notificacao);
+                leitura++;
+            }
+            if (lote.isEmpty()) {
+                if (encerrando && proximaEscrita.get() == leitura) {
+                    return;
+                }
+                // Anuncia a parada e confere a posição de novo: um produtor que
+                // publicar depois disso vê o sinal e acorda o consumidor.
+                consumidorParado = true;
+                if (posicoes.get((int) (leitura & mascara)) == null && !encerrando) {
+                    LockSupport.park(this);
+                }
+                consumidorParado = false;
+                continue;
+            }
+            proximaLeitura = leitura;
+            entregar(lote);
+            lote.clear();
+        }
+    }
+
+    private void entregar(List<NotificacaoReserva> lote) {
+        List<NotificacaoReserva> visivel = Collections.unmodifiableList(lote);
+        for (AssinanteNotificacoes assinante : assinantes) {
+            try {
+                assinante.receber(visivel);
+            } catch (RuntimeException e) {
+                falhasAssinantes++;
+            }
+        }
+        long agora = System.nanoTime();
+        long soma = somaAtrasoNanos;
+        long maximo = atrasoMaximoNanos;
+        for (NotificacaoReserva notificacao : lote) {
+            long atraso = agora - notificacao.getPublicadaEm();
+            soma += atraso;
+            maximo = Math.max(maximo, atraso);
+        }
+        somaAtrasoNanos = soma;
+        atrasoMaximoNanos = maximo;
+        entregues += lote.size();
+    }
+}
+
+/**
+ * Diário (write-ahead log) de operações da biblioteca.
+ * Cada operação vira um registro anexado ao fim do arquivo: tipo (1 byte),
+ * usuário (int), livro (int) e um valor (long). Cadastros de livros e de
+ * usuários levam em seguida os textos (tamanho e bytes UTF-8).
+ */
+class DiarioBiblioteca implements Closeable {
+
+    enum Durabilidade {
+        /** Registros ficam em buffer e vão ao disco quando o lote enche, sem fsync. */
+        ASSINCRONA,
+        /** Commit em grupo: um fsync por lote ou por intervalo, o que vier primeiro. */
+        LOTE,
+        /** Um fsync a cada registro. */
+        SINCRONA
+    }
+
+    interface Aplicador {
+        /** {@code textos} é vazio, exceto nos registros de cadastro. */
+        void aplicar(byte tipo, int usuario, int livro, long valor, String[] textos);
+    }
+
+    static final byte EMPRESTIMO = 1;
+    static final byte DEVOLUCAO = 2;
+    static final byte RESERVA = 3;
+    static final byte PAGAMENTO = 4;
+    static final byte NOTIFICACAO = 5;
+    static final byte MULTA = 6;
+    static final byte APURACAO = 7;
+    /** Livro novo: usuário = emprestados, livro = id, valor = exemplares; textos: título e autor. */
+    static final byte CADASTRO_LIVRO = 8;
+    /** Usuário novo: usuário = id, valor = multa acumulada; texto: nome. */
+    static final byte CADASTRO_USUARIO = 9;
+
+    static final int TAMANHO_REGISTRO = 17;
+    private static final String[] SEM_TEXTOS = new String[0];
+    private static final int MAGIC = 0x4257414C; // "BWAL"
+    // A versão 1 não tinha registros de cadastro; o resto do formato é igual.
+    private static final short VERSAO = 2;
+    private static final int TAMANHO_CABECALHO = 14;
+
+    private final FileChannel canal;
+    private final Durabilidade durabilidade;
+    private final long intervaloNanos;
+    private final ByteBuffer pendentes;
+    private long ultimaSincronizacao;
+
+    private DiarioBiblioteca(FileChannel canal, Durabilidade durabilidade, int tamanhoLote, long intervaloMillis) {
+        this.canal = canal;
+        this.durabilidade = durabilidade;
+        this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloMillis);
+        this.pendentes = ByteBuffer.allocateDirect(tamanhoLote * TAMANHO_REGISTRO);
+        this.ultimaSincronizacao = System.nanoTime();
+    }
+
+    /**
+     * Abre o diário para anexar registros. Um diário de outra geração já foi
+     * incorporado a um snapshot e é descartado; um registro final incompleto
+     * (escrita interrompida) é truncado.
+     */
+    static DiarioBiblioteca abrir(Path arquivo, long geracao, Durabilidade durabilidade,
+                                  int tamanhoLote, long intervaloMillis) throws IOException {
+        if (tamanhoLote <= 0 || intervaloMillis <= 0) {
+            throw new IllegalArgumentException("Tamanho do lote e intervalo devem ser positivos.");
+        }
+        FileChannel canal = FileChannel.open(arquivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (geracaoDoCabecalho(canal) == geracao) {
+                long fim = percorrer(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()), null);
+                canal.truncate(fim);
+                canal.write(ByteBuffer.allocate(2).putShort(0, VERSAO), 4);
+                canal.position(fim);
+            } else {
+                escreverCabecalho(canal, geracao);
+            }
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        return new DiarioBiblioteca(canal, durabilidade, tamanhoLote, intervaloMillis);
+    }
+
+    /**
+     * Reaplica os registros de um diário da geração informada.
+     */
+    static void reproduzir(Path arquivo, long geracao, Aplicador aplicador) throws IOException {
+        if (!Files.exists(arquivo)) {
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (geracaoDoCabecalho(canal) != geracao) {
+                return;
+            }
+            percorrer(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()), aplicador);
+        }
+    }
+
+    /**
+     * Lê os registros completos a partir do cabeçalho e devolve onde eles
+     * terminam; um registro final incompleto é ignorado.
+     */
+    private static long percorrer(MappedByteBuffer buffer, Aplicador aplicador) {
+        buffer.position(TAMANHO_CABECALHO);
+        while (buffer.remaining() >= TAMANHO_REGISTRO) {
+            int inicio = buffer.position();
+            byte tipo = buffer.get();
+            int usuario = buffer.getInt();
+            int livro = buffer.getInt();
+            long valor = buffer.getLong();
+            String[] textos = textosDoTipo(tipo) == 0 ? SEM_TEXTOS : new String[textosDoTipo(tipo)];
+            for (int i = 0; i < textos.length; i++) {
+                int tamanho = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+                if (tamanho < 0 || tamanho > buffer.remaining()) {
+                    return inicio;
+                }
+                byte[] bytes = new byte[tamanho];
+                buffer.get(bytes);
+                textos[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (aplicador != null) {
+                aplicador.aplicar(tipo, usuario, livro, valor, textos);
+            }
+        }
+        return buffer.position();
+    }
+
+    private static int textosDoTipo(byte tipo) {
+        switch (tipo) {
+            case CADASTRO_LIVRO:
+                return 2;
+            case CADASTRO_USUARIO:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    synchronized void registrar(byte tipo, int usuario, int livro, long valor) throws IOException {
+        if (pendentes.remaining() < TAMANHO_REGISTRO) {
+            descarregar(false);
+        }
+        pendentes.put(tipo).putInt(usuario).putInt(livro).putLong(valor);
+        concluirRegistro();
+    }
+
+    /**
+     * Anexa um registro de cadastro, que carrega textos além dos campos fixos.
+     */
+    synchronized void registrarCadastro(byte tipo, int usuario, int livro, long valor, String... textos)
+            throws IOException {
+        if (textos.length != textosDoTipo(tipo)) {
+            throw new IllegalArgumentException("Quantidade de textos inválida para o registro " + tipo);
+        }
+        byte[][] codificados = new byte[textos.length][];
+        int tamanho = TAMANHO_REGISTRO;
+        for (int i = 0; i < textos.length; i++) {
+            codificados[i] = textos[i].getBytes(StandardCharsets.UTF_8);
+            tamanho += 4 + codificados[i].length;
+        }
+        if (pendentes.remaining() < tamanho) {
+            descarregar(false);
+        }
+        // Um registro maior que o lote inteiro vai direto para o arquivo.
+        ByteBuffer destino = tamanho <= pendentes.remaining() ? pendentes : ByteBuffer.allocate(tamanho);
+        destino.put(tipo).putInt(usuario).putInt(livro).putLong(valor);
+        for (byte[] bytes : codificados) {
+            destino.putInt(bytes.length).put(bytes);
+        }
+        if (destino != pendentes) {
+            destino.flip();
+            while (destino.hasRemaining()) {
+                canal.write(destino);
+            }
+        }
+        concluirRegistro();
+    }
+
+    // O lote é medido em bytes: com cadastros de tamanho variável, ele está
+    // cheio quando não cabe mais um registro de tamanho fixo.
+    private void concluirRegistro() throws IOException {
+        boolean cheio = pendentes.remaining() < TAMANHO_REGISTRO;
+        switch (durabilidade) {
+            case SINCRONA:
+                descarregar(true);
+                break;
+            case LOTE:
+                if (cheio || System.nanoTime() - ultimaSincronizacao >= intervaloNanos) {
+                    descarregar(true);
+                }
+                break;
+            default:
+                if (cheio) {
+                    descarregar(false);
+                }
+        }
+    }
+
+    /**
+     * Grava os registros pendentes e força o fsync, qualquer que seja a durabilidade.
+     */
+    synchronized void sincronizar() throws IOException {
+        descarregar(true);
+    }
+
+    /**
+     * Descarta o conteúdo do diário, já incorporado ao snapshot da nova geração.
+     */
+    synchronized void reiniciar(long geracao) throws IOException {
+        pendentes.clear();
+        escreverCabecalho(canal, geracao);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            descarregar(durabilidade != Durabilidade.ASSINCRONA);
+        } finally {
+            canal.close();
+        }
+    }
+
+    private void descarregar(boolean forcar) throws IOException {
+        pendentes.flip();
+        while (pendentes.hasRemaining()) {
+            canal.write(pendentes);
+        }
+        pendentes.clear();
+        if (forcar) {
+            canal.force(false);
+            ultimaSincronizacao = System.nanoTime();
+        }
+    }
+
+    private static long geracaoDoCabecalho(FileChannel canal) throws IOException {
+        if (canal.size() < TAMANHO_CABECALHO) {
+            return -1;
+        }
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        canal.read(cabecalho, 0);
+        cabecalho.flip();
+        if (cabecalho.getInt() != MAGIC) {
+            return -1;
+        }
+        short versao = cabecalho.getShort();
+        if (versao < 1 || versao > VERSAO) {
+            return -1;
+        }
+        return cabecalho.getLong();
+    }
+
+    private static void escreverCabecalho(FileChannel canal, long geracao) throws IOException {
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        cabecalho.putInt(MAGIC).putShort(VERSAO).putLong(geracao).flip();
+        canal.truncate(0);
+        canal.write(cabecalho, 0);
+        canal.position(TAMANHO_CABECALHO);
+        canal.force(true);
+    }
+}
+
+public class Biblioteca {
+
+    private static final String ARQUIVO_DADOS = "biblioteca.dat";
+    private static final String ARQUIVO_DIARIO = "biblioteca.wal";
+    private static final int MAGIC = 0x4249424C; // "BIBL"
+    private static final short VERSAO_FORMATO = 3;
+    private static final Lock SEM_BIBLIOTECA = new ReentrantReadWriteLock().readLock();
+
+    private List<Livro> livros;
+    private RegistroEmprestimos emprestimos;
+    private List<Usuario> usuarios;
+    private final RankingLivros rankingReservas = new RankingLivros();
+    private final PopularidadeRecente popularidadeRecente =
+            new PopularidadeRecente(Clock.systemUTC(), Duration.ofDays(7));
+    private final ApuracaoMultas apuracao = new ApuracaoMultas();
+    private final IndiceBusca indiceBusca = new IndiceBusca();
+    private volatile BarramentoNotificacoes notificacoes;
+    // Depois de encerrarNotificacoes nenhum barramento novo é criado.
+    private volatile boolean notificacoesEncerradas;
+    // Avisos gerados com as travas da operação tomadas; a thread só os publica
+    // ao soltar a trava de leitura, para nunca esperar pelo barramento com elas.
+    private final ThreadLocal<List<NotificacaoReserva>> avisosPendentes =
+            ThreadLocal.withInitial(ArrayList::new);
+    private volatile Clock relogio = Clock.systemDefaultZone();
+
+    // Operações tomam a trava de leitura; snapshot e carga tomam a de escrita,
+    // para que o snapshot nunca capture uma operação pela metade.
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private long geracao;
+    private DiarioBiblioteca diario;
+    private ScheduledExecutorService manutencao;
+    // Data da última apuração lida do snapshot/diário durante a carga.
+    private long ultimaApuracaoLida;
+
+    public Biblioteca() {
+        this.livros = new ArrayList<>();
+        this.emprestimos = new RegistroEmprestimos();
+        this.usuarios = new ArrayList<>();
+    }
+
+    static Lock travaOperacao(Biblioteca biblioteca) {
+        return biblioteca != null ? biblioteca.trava.readLock() : SEM_BIBLIOTECA;
+    }
+
+    static void concluirOperacao(Biblioteca biblioteca, Lock trava) {
+        trava.unlock();
+        if (biblioteca != null) {
+            biblioteca.publicarAvisos();
+        }
+    }
+
+    /**
+     * Relógio usado para datar empréstimos e apurar multas; em testes, permite
+     * simular a passagem do tempo.
+     */
+    public void definirRelogio(Clock relogio) {
+        this.relogio = Objects.requireNonNull(relogio, "Relógio não pode ser nulo");
+    }
+
+    // Visões usadas pelas verificações de invariantes (EstresseBiblioteca)
+    List<Livro> getLivros() {
+        return Collections.unmodifiableList(livros);
+    }
+
+    List<Usuario> getUsuarios() {
+        return Collections.unmodifiableList(usuarios);
+    }
+
+    RegistroEmprestimos getEmprestimos() {
+        return emprestimos;
+    }
+
+    LocalDate hoje() {
+        return LocalDate.now(relogio);
+    }
+
+    public void adicionarLivro(Livro livro) {
+        trava.writeLock().lock();
+        try {
+            int id = livros.size();
+            boolean snapshot = diario != null && livro.getTotalReservas() > 0;
+            if (!snapshot) {
+                // O registro vai ao diário antes de o livro aparecer no acervo.
+                gravarCadastro(DiarioBiblioteca.CADASTRO_LIVRO, livro.getEmprestados(), id, livro.getExemplares(),
+                        livro.getTitulo(), livro.getAutor().getNome());
+            }
+            livro.vincular(this, id);
+            livros.add(livro);
+            indiceBusca.indexar(livro);
+            rankingReservas.ajustar(livro, livro.getTotalReservas());
+            if (snapshot) {
+                // Reservas feitas antes do cadastro não cabem no registro.
+                salvarDadosOuFalhar();
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    public void adicionarUsuario(Usuario usuario) {
+        trava.writeLock().lock();
+        try {
+            int id = usuarios.size();
+            gravarCadastro(DiarioBiblioteca.CADASTRO_USUARIO, id, -1, usuario.getMultaAcumulada(), usuario.getNome());
+            usuario.vincular(this, id);
+            usuarios.add(usuario);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    public void registrarEmprestimo(Emprestimo emprestimo) {
+        // Grava no diário antes de publicar no registro: uma devolução só
+        // enxerga empréstimos cujo registro já está no diário.
+        registrarNoDiario(DiarioBiblioteca.EMPRESTIMO, emprestimo.getUsuario(), emprestimo.getLivro(),
+                emprestimo.getDataEmprestimo().toEpochDay());
+        emprestimos.adicionar(emprestimo);
+        apuracao.acompanhar(emprestimo);
+        popularidadeRecente.registrarEvento(emprestimo.getLivro());
+    }
+
+    public void registrarDevolucao(Emprestimo emprestimo) {
+        concluirDevolucao(emprestimo);
+    }
+
+    /**
+     * Retira o empréstimo do registro e aplica a multa; retorna {@code false}
+     * se ele já tinha sido devolvido por outra thread.
+     */
+    boolean concluirDevolucao(Emprestimo emprestimo) {
+        if (!emprestimos.remover(emprestimo)) {
+            return false;
+        }
+        LocalDate hoje = hoje();
+        // Só a parte da multa que a apuração periódica ainda não cobrou.
+        long multa = apuracao.encerrar(emprestimo, hoje);
+        if (emprestimo.isEmAtraso(hoje)) {
+            System.out.println("O usuário " + emprestimo.getUsuario().getNome() + " está em atraso. Multa: " + multa);
+            emprestimo.getUsuario().adicionarMulta(multa);
+        }
+        registrarNoDiario(DiarioBiblioteca.DEVOLUCAO, emprestimo.getUsuario(), emprestimo.getLivro(), multa);
+        return true;
+    }
+
+    public Emprestimo buscarEmprestimo(Usuario usuario, Livro livro) {
+        return emprestimos.buscar(usuario, livro);
+    }
+
+    void registrarReserva(Livro livro, Usuario usuario) {
+        registrarNoDiario(DiarioBiblioteca.RESERVA, usuario, livro, 0);
+        rankingReservas.ajustar(livro, 1);
+        popularidadeRecente.registrarEvento(livro);
+    }
+
+    void registrarNotificacao(Livro livro, Usuario usuario) {
+        registrarNoDiario(DiarioBiblioteca.NOTIFICACAO, usuario, livro, 0);
+        rankingReservas.ajustar(livro, -1);
+    }
+
+    void registrarPagamento(Usuario usuario, long valor) {
+        registrarNoDiario(DiarioBiblioteca.PAGAMENTO, usuario, null, valor);
+    }
+
+    /**
+     * Apura as multas com o relógio da biblioteca.
+     */
+    public ApuracaoMultas.Resultado apurarMultas() {
+        return apurarMultas(relogio);
+    }
+
+    /**
+     * Cobra, de uma vez por usuário, as multas acumuladas desde a última
+     * apuração. O relógio é lido uma única vez por execução.
+     */
+    public ApuracaoMultas.Resultado apurarMultas(Clock relogioApuracao) {
+        LocalDate hoje = LocalDate.now(relogioApuracao);
+        Lock travaLeitura = trava.readLock();
+        travaLeitura.lock();
+        try {
+            ApuracaoMultas.Resultado resultado = apuracao.apurar(hoje);
+            for (Map.Entry<Usuario, Long> multa : resultado.getMultas().entrySet()) {
+                if (multa.getValue() > 0) {
+                    multa.getKey().adicionarMulta(multa.getValue());
+                    registrarNoDiario(DiarioBiblioteca.MULTA, multa.getKey(), null, multa.getValue());
+                }
+            }
+            gravarNoDiario(DiarioBiblioteca.APURACAO, -1, -1, hoje.toEpochDay());
+            return resultado;
+        } finally {
+            travaLeitura.unlock();
+        }
+    }
+
+    public List<Emprestimo> listarEmprestimosEmAtraso() {
+        return apuracao.listarEmAtraso();
+    }
+
+    public void iniciarApuracaoDiaria() {
+        agendar(this::apurarMultas, 1, TimeUnit.DAYS);
+    }
+
+    private void registrarNoDiario(byte tipo, Usuario usuario, Livro livro, long valor) {
+        if (diario == null) {
+            return;
+        }
+        if (usuario.getId() < 0 || (livro != null && livro.getId() < 0)) {
+            throw new IllegalStateException("Livro e usuário devem estar cadastrados na biblioteca.");
+        }
+        gravarNoDiario(tipo, usuario.getId(), livro == null ? -1 : livro.getId(), valor);
+    }
+
+    private void gravarNoDiario(byte tipo, int idUsuario, int idLivro, long valor) {
+        DiarioBiblioteca atual = diario;
+        if (atual == null) {
+            return;
+        }
+        try {
+            atual.registrar(tipo, idUsuario, idLivro, valor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar no diário da biblioteca.", e);
+        }
+    }
+
+    private void gravarCadastro(byte tipo, int idUsuario, int idLivro, long valor, String... textos) {
+        if (diario == null) {
+            return;
+        }
+        try {
+            diario.registrarCadastro(tipo, idUsuario, idLivro, valor, textos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar no diário da biblioteca.", e);
+        }
+    }
+
+    public void ativarDiario(DiarioBiblioteca.Durabilidade durabilidade) throws IOException {
+        ativarDiario(durabilidade, 256, 5);
+    }
+
+    /**
+     * Passa a anexar cada empréstimo, devolução, reserva e pagamento ao diário.
+     * Livros e usuários cadastrados com o diário ativo também vão para ele, sem
+     * regravar o snapshot.
+     * Em {@code LOTE}, até {@code tamanhoLote} registros ou {@code intervaloMillis}
+     * milissegundos compartilham o mesmo fsync; cadastros, que carregam textos,
+     * ocupam o lote pelo seu tamanho em bytes.
+     */
+    public void ativarDiario(DiarioBiblioteca.Durabilidade durabilidade, int tamanhoLote, long intervaloMillis)
+            throws IOException {
+        trava.writeLock().lock();
+        try {
+            if (diario != null) {
+                diario.close();
+            }
+            diario = DiarioBiblioteca.abrir(Paths.get(ARQUIVO_DIARIO), geracao, durabilidade,
+                    tamanhoLote, intervaloMillis);
+            // O acervo atual vai para um snapshot, que passa a ser a base da
+            // reprodução; daqui em diante os cadastros seguem pelo diário.
+            salvarDados();
+            if (durabilidade == DiarioBiblioteca.Durabilidade.LOTE) {
+                agendar(this::sincronizarDiario, intervaloMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agenda a compactação periódica: um novo snapshot absorve o diário.
+     */
+    public void iniciarCompactador(long intervalo, TimeUnit unidade) {
+        agendar(() -> {
+            try {
+                salvarDados();
+            } catch (IOException e) {
+                System.out.println("Falha ao compactar o diário: " + e.getMessage());
+            }
+        }, intervalo, unidade);
+    }
+
+    public void encerrarDiario() throws IOException {
+        ScheduledExecutorService tarefas;
+        synchronized (this) {
+            tarefas = manutencao;
+            manutencao = null;
+        }
+        if (tarefas != null) {
+            // Sem shutdownNow: interromper um fsync em andamento fecha o canal
+            // do diário. Espera fora da trava, pois a compactação também a toma.
+            tarefas.shutdown();
+            try {
+                tarefas.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        trava.writeLock().lock();
+        try {
+            if (diario != null) {
+                diario.close();
+                diario = null;
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    private void salvarDadosOuFalhar() {
+        try {
+            salvarDados();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar o snapshot da biblioteca.", e);
+        }
+    }
+
+    private void sincronizarDiario() {
+        DiarioBiblioteca atual = diario;
+        if (atual != null) {
+            try {
+                atual.sincronizar();
+            } catch (IOException e) {
+                System.out.println("Falha ao sincronizar o diário: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void agendar(Runnable tarefa, long intervalo, TimeUnit unidade) {
+        if (manutencao == null) {
+            manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "biblioteca-manutencao");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        manutencao.scheduleWithFixedDelay(tarefa, intervalo, intervalo, unidade);
+    }
+
+    public List<String> listarLivrosPopulares() {
+        return listarLivrosPopulares(5);
+    }
+
+    /**
+     * Os {@code k} livros com mais reservas na fila, lidos do ranking em O(k).
+     */
+    public List<String> listarLivrosPopulares(int k) {
+        return rankingReservas.topo(k).stream()
+                .map(Livro::getTitulo)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Os {@code k} livros mais procurados recentemente: empréstimos e reservas
+     * com meia-vida de 7 dias. Começa do zero a cada execução.
+     */
+    public List<String> listarLivrosEmAlta(int k) {
+        return popularidadeRecente.topo(k).stream()
+                .map(Livro::getTitulo)
+                .collect(Collectors.toList());
+    }
+
+    public List<Livro> buscarLivros(String consulta) {
+        return buscarLivros(consulta, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Livros cujo título ou autor contém todos os termos da consulta, sem
+     * diferenciar acentos e maiúsculas; o último termo pode estar incompleto.
+     */
+    public List<Livro> buscarLivros(String consulta, int limite) {
+        trava.readLock().lock();
+        try {
+            int[] ids = indiceBusca.buscar(consulta, limite);
+            List<Livro> encontrados = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                encontrados.add(livros.get(id));
+            }
+            return encontrados;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public List<String> sugerirTermos(String prefixo, int limite) {
+        trava.readLock().lock();
+        try {
+            return indiceBusca.completar(prefixo, limite);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Barramento das notificações de reserva, criado no primeiro uso com um
+     * assinante que imprime cada aviso no console. Depois de encerrado, é o
+     * mesmo barramento, que descarta o que for publicado; se nunca foi
+     * criado, não é mais.
+     */
+    public BarramentoNotificacoes getNotificacoes() {
+        BarramentoNotificacoes atual = notificacoes;
+        if (atual == null) {
+            synchronized (this) {
+                atual = notificacoes;
+                if (atual == null) {
+                    if (notificacoesEncerradas) {
+                        throw new IllegalStateException("As notificações da biblioteca foram encerradas.");
+                    }
+                    atual = new BarramentoNotificacoes(1024, 64, BarramentoNotificacoes.PoliticaCheio.BLOQUEAR);
+                    atual.assinar(lote -> lote.forEach(n -> System.out.println(n.getMensagem())));
+                    notificacoes = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    void notificar(NotificacaoReserva notificacao) {
+        avisosPendentes.get().add(notificacao);
+    }
+
+    /**
+     * Publica os avisos pendentes da thread, se ela não estiver mais dentro de
+     * uma operação.
+     */
+    void publicarAvisos() {
+        if (trava.getReadHoldCount() > 0 || trava.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        List<NotificacaoReserva> pendentes = avisosPendentes.get();
+        if (pendentes.isEmpty()) {
+            return;
+        }
+        List<NotificacaoReserva> lote = new ArrayList<>(pendentes);
+        pendentes.clear();
+        BarramentoNotificacoes destino = notificacoesEncerradas ? notificacoes : getNotificacoes();
+        if (destino == null) {
+            // Encerrado sem nunca ter sido criado: não há quem receba.
+            return;
+        }
+        for (NotificacaoReserva notificacao : lote) {
+            destino.publicar(notificacao);
+        }
+    }
+
+    /**
+     * Entrega as notificações pendentes e encerra o barramento de vez.
+     */
+    public void encerrarNotificacoes() {
+        BarramentoNotificacoes atual;
+        synchronized (this) {
+            notificacoesEncerradas = true;
+            atual = notificacoes;
+        }
+        if (atual != null) {
+            atual.close();
+        }
+    }
+
+    public void exibirStatusMultas() {
+        trava.readLock().lock();
+        try {
+            for (Usuario usuario : usuarios) {
+                System.out.println("Usuário: " + usuario.getNome() + " - Multa acumulada: " + usuario.getMultaAcumulada());
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Grava o acervo em formato binário versionado:
+     * cabeçalho (magic, versão, geração), livros, usuários, reservas e empréstimos.
+     * Strings são prefixadas pelo tamanho e referências entre registros
+     * são gravadas como índices, evitando serializar o grafo de objetos.
+     * Cada snapshot inicia uma nova geração e, com o diário ativo, o reinicia.
+     */
+    public void salvarDados() throws IOException {
+        trava.writeLock().lock();
+        try {
+            Path destino = Paths.get(ARQUIVO_DADOS);
+            Path temporario = Paths.get(ARQUIVO_DADOS + ".tmp");
+            // Gerações baseadas no relógio evitam que um diário antigo de outra
+            // execução seja confundido com o da nova geração.
+            long novaGeracao = Math.max(geracao + 1, System.currentTimeMillis());
+            escreverSnapshot(temporario, novaGeracao);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // A troca de nome precisa estar no disco antes de o diário ser esvaziado.
+            sincronizarDiretorio(destino);
+            geracao = novaGeracao;
+            if (diario != null) {
+                diario.reiniciar(geracao);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    private void escreverSnapshot(Path arquivo, long geracaoSnapshot) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSAO_FORMATO);
+            out.writeLong(geracaoSnapshot);
+            out.writeLong(apuracao.getUltimaApuracao());
+
+            out.writeInt(livros.size());
+            for (Livro livro : livros) {
+                escreverTexto(out, livro.getTitulo());
+                escreverTexto(out, livro.getAutor().getNome());
+                out.writeInt(livro.getExemplares());
+                out.writeInt(livro.getEmprestados());
+            }
+
+            out.writeInt(usuarios.size());
+            for (Usuario usuario : usuarios) {
+                escreverTexto(out, usuario.getNome());
+                out.writeLong(usuario.getMultaAcumulada());
+            }
+
+            for (Livro livro : livros) {
+                List<Usuario> reservas = livro.getReservas();
+                out.writeInt(reservas.size());
+                for (Usuario usuario : reservas) {
+                    out.writeInt(usuario.getId());
+                }
+            }
+
+            out.writeInt(emprestimos.tamanho());
+            for (Emprestimo emprestimo : emprestimos) {
+                out.writeInt(emprestimo.getUsuario().getId());
+                out.writeInt(emprestimo.getLivro().getId());
+                out.writeLong(emprestimo.getDataEmprestimo().toEpochDay());
+            }
+            out.flush();
+            // O snapshot só substitui o anterior depois de estar inteiro no disco
+            canal.force(true);
+        }
+    }
+
+    private static void sincronizarDiretorio(Path arquivo) throws IOException {
+        Path diretorio = arquivo.toAbsolutePath().getParent();
+        FileChannel canal;
+        try {
+            canal = FileChannel.open(diretorio, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Há sistemas (Windows) que não abrem diretórios como arquivo.
+            return;
+        }
+        try (FileChannel aberto = canal) {
+            aberto.force(true);
+        }
+    }
+
+    /**
+     * Carrega o acervo mapeando o arquivo em memória, sem passar por
+     * {@link ObjectInputStream} nem copiar o arquivo inteiro para o heap,
+     * e reaplica por cima dele o diário da mesma geração.
+     */
+    public void carregarDados() throws IOException {
+        trava.writeLock().lock();
+        try {
+            livros = new ArrayList<>();
+            usuarios = new ArrayList<>();
+            emprestimos = new RegistroEmprestimos();
+            geracao = 0;
+            ultimaApuracaoLida = ApuracaoMultas.NUNCA;
+            File file = new File(ARQUIVO_DADOS);
+            if (file.exists()) {
+                lerSnapshot(file.toPath());
+            } else {
+                System.out.println("Arquivo de dados não encontrado. Iniciando com dados vazios.");
+            }
+            try {
+                DiarioBiblioteca.reproduzir(Paths.get(ARQUIVO_DIARIO), geracao, this::reaplicarRegistro);
+            } catch (IndexOutOfBoundsException | IllegalStateException e) {
+                throw new IOException("Diário inconsistente com o snapshot: " + ARQUIVO_DIARIO, e);
+            }
+            apuracao.reiniciar(ultimaApuracaoLida, emprestimos);
+            indiceBusca.limpar();
+            rankingReservas.limpar();
+            popularidadeRecente.limpar();
+            for (Livro livro : livros) {
+                indiceBusca.indexar(livro);
+                rankingReservas.ajustar(livro, livro.getTotalReservas());
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    private void lerSnapshot(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+                throw new IOException("Arquivo de dados inválido: " + ARQUIVO_DADOS);
+            }
+            short versao = buffer.getShort();
+            if (versao < 1 || versao > VERSAO_FORMATO) {
+                throw new IOException("Versão de formato não suportada: " + versao);
+            }
+            long geracaoLida = versao >= 2 ? buffer.getLong() : 0;
+            ultimaApuracaoLida = versao >= 3 ? buffer.getLong() : ApuracaoMultas.NUNCA;
+
+            int totalLivros = buffer.getInt();
+            List<Livro> livrosLidos = new ArrayList<>(totalLivros);
+            Map<String, Autor> autores = new HashMap<>();
+            for (int i = 0; i < totalLivros; i++) {
+                String titulo = lerTexto(buffer);
+                Autor autor = autores.computeIfAbsent(lerTexto(buffer), Autor::new);
+                Livro livro = new Livro(titulo, autor, buffer.getInt());
+                livro.restaurarEmprestados(buffer.getInt());
+                livro.vincular(this, i);
+                livrosLidos.add(livro);
+            }
+
+            int totalUsuarios = buffer.getInt();
+            List<Usuario> usuariosLidos = new ArrayList<>(totalUsuarios);
+            for (int i = 0; i < totalUsuarios; i++) {
+                Usuario usuario = new Usuario(lerTexto(buffer));
+                usuario.adicionarMulta(buffer.getLong());
+                usuario.vincular(this, i);
+                usuariosLidos.add(usuario);
+            }
+
+            for (Livro livro : livrosLidos) {
+                int totalReservas = buffer.getInt();
+                for (int i = 0; i < totalReservas; i++) {
+                    livro.restaurarReserva(usuariosLidos.get(buffer.getInt()));
+                }
+            }
+
+            int totalEmprestimos = buffer.getInt();
+            RegistroEmprestimos emprestimosLidos = new RegistroEmprestimos();
+            for (int i = 0; i < totalEmprestimos; i++) {
+                Usuario usuario = usuariosLidos.get(buffer.getInt());
+                Livro livro = livrosLidos.get(buffer.getInt());
+                emprestimosLidos.adicionar(new Emprestimo(usuario, livro, LocalDate.ofEpochDay(buffer.getLong())));
+            }
+
+            livros = livrosLidos;
+            usuarios = usuariosLidos;
+            emprestimos = emprestimosLidos;
+            geracao = geracaoLida;
+        } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Arquivo de dados corrompido: " + ARQUIVO_DADOS, e);
+        }
+    }
+
+    private void reaplicarRegistro(byte tipo, int idUsuario, int idLivro, long valor, String[] textos) {
+        if (tipo == DiarioBiblioteca.CADASTRO_LIVRO) {
+            if (idLivro != livros.size()) {
+                throw new IllegalStateException("Cadastro de livro fora de ordem: " + idLivro);
+            }
+            Livro livro = new Livro(textos[0], new Autor(textos[1]), (int) valor);
+            livro.restaurarEmprestados(idUsuario);
+            livro.vincular(this, idLivro);
+            livros.add(livro);
+            return;
+        }
+        if (tipo == DiarioBiblioteca.CADASTRO_USUARIO) {
+            if (idUsuario != usuarios.size()) {
+                throw new IllegalStateException("Cadastro de usuário fora de ordem: " + idUsuario);
+            }
+            Usuario usuario = new Usuario(textos[0]);
+            usuario.adicionarMulta(valor);
+            usuario.vincular(this, idUsuario);
+            usuarios.add(usuario);
+            return;
+        }
+        Usuario usuario = idUsuario >= 0 ? usuarios.get(idUsuario) : null;
+        Livro livro = idLivro >= 0 ? livros.get(idLivro) : null;
+        switch (tipo) {
+            case DiarioBiblioteca.EMPRESTIMO: {
+                emprestimos.adicionar(new Emprestimo(usuario, livro, LocalDate.ofEpochDay(valor)));
+                livro.restaurarEmprestados(livro.getEmprestados() + 1);
+                break;
+            }
+            case DiarioBiblioteca.DEVOLUCAO: {
+                Emprestimo emprestimo = emprestimos.buscar(usuario, livro);
+                if (emprestimo != null) {
+                    emprestimos.remover(emprestimo);
+                }
+                usuario.adicionarMulta(valor);
+                livro.restaurarEmprestados(livro.getEmprestados() - 1);
+                break;
+            }
+            case DiarioBiblioteca.RESERVA:
+                livro.restaurarReserva(usuario);
+                break;
+            case DiarioBiblioteca.NOTIFICACAO:
+                livro.restaurarNotificacao(usuario);
+                break;
+            case DiarioBiblioteca.PAGAMENTO:
+                usuario.adicionarMulta(-valor);
+                break;
+            case DiarioBiblioteca.MULTA:
+                usuario.adicionarMulta(valor);
+                break;
+            case DiarioBiblioteca.APURACAO:
+                ultimaApuracaoLida = valor;
+                break;
+            default:
+                throw new IllegalStateException("Tipo de registro desconhecido: " + tipo);
+        }
+    }
+
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String lerTexto(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     public static void main(String[] args) {
@@ -319,6 +2267,7 @@ public class Biblioteca implements Serializable {
 
             List<String> livrosPopulares = biblioteca.listarLivrosPopulares();
             System.out.println("Livros mais populares: " + livrosPopulares);
+            biblioteca.encerrarNotificacoes();
 
             // Salvando dados
             biblioteca.salvarDados();
@@ -327,7 +2276,7 @@ public class Biblioteca implements Serializable {
             Biblioteca bibliotecaCarregada = new Biblioteca();
             bibliotecaCarregada.carregarDados();
 
-        } catch (LivroIndisponivelException | LivroNaoEmprestadoException | IOException | ClassNotFoundException | InterruptedException e) {
+        } catch (LivroIndisponivelException | LivroNaoEmprestadoException | IOException | InterruptedException e) {
         }
     }
 }
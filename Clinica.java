@@ -1,87 +1,540 @@
 package gerenciamento;
 
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Sistema de Gerenciamento de Clínica.
  */
 public class Clinica {
 
+    /**
+     * Exceção lançada quando o horário pedido se sobrepõe a outra consulta.
+     */
+    public static class HorarioIndisponivelException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public HorarioIndisponivelException(String mensagem) {
+            super(mensagem);
+        }
+    }
+
     /**
      * Classe que representa um médico.
+     * A agenda é um índice ordenado pelo início de cada consulta. Como as
+     * consultas de um médico nunca se sobrepõem, ordenar pelo início também
+     * ordena pelo fim, e um conflito só pode acontecer com a vizinha anterior
+     * ou com a seguinte: a verificação custa O(log n), sem árvore de intervalos.
+     * Agendamentos travam apenas os dias que a consulta ocupa, no médico e
+     * depois no paciente; consultas em dias ou médicos diferentes são
+     * agendadas em paralelo e as leituras da agenda não travam.
      */
     public static class Medico {
+        public static final LocalTime INICIO_EXPEDIENTE = LocalTime.of(8, 0);
+        public static final LocalTime FIM_EXPEDIENTE = LocalTime.of(18, 0);
+
         private final String nome;
-        private final List<Consulta> consultas = new ArrayList<>();
+        private final NavigableMap<LocalDateTime, Consulta> agenda = new ConcurrentSkipListMap<>();
+        private final TravasPorDia travas = new TravasPorDia();
+        private final PacientesDoMedico pacientes = new PacientesDoMedico();
 
         public Medico(String nome) {
             this.nome = Objects.requireNonNull(nome, "Nome não pode ser nulo");
         }
 
+        /**
+         * Agenda na data informada ("2024-09-15" ou "2024-09-15T10:30"). Só com
+         * a data, usa o primeiro horário livre do expediente daquele dia.
+         */
         public void agendarConsulta(Paciente paciente, String data) {
-            Consulta consulta = new Consulta(this, paciente, data);
-            consultas.add(consulta);
-            paciente.adicionarConsulta(consulta);
-            System.out.println("Consulta agendada com sucesso para o médico: " + nome + " na data: " + data);
+            try {
+                if (data.indexOf('T') >= 0) {
+                    agendarConsulta(paciente, LocalDateTime.parse(data), Consulta.DURACAO_PADRAO);
+                } else {
+                    agendarNoDia(paciente, LocalDate.parse(data));
+                }
+                System.out.println("Consulta agendada com sucesso para o médico: " + nome + " na data: " + data);
+            } catch (HorarioIndisponivelException | DateTimeParseException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        /**
+         * Agenda uma consulta se nem o médico nem o paciente tiverem outra no
+         * mesmo intervalo. Pode ser chamado de várias threads: a verificação e
+         * a inclusão nos dois lados acontecem com os dias da consulta travados.
+         */
+        public Consulta agendarConsulta(Paciente paciente, LocalDateTime inicio, Duration duracao) throws HorarioIndisponivelException {
+            Consulta consulta = new Consulta(this, paciente, inicio, duracao);
+            LocalDateTime fim = consulta.getFim();
+            travas.travar(inicio, fim);
+            try {
+                paciente.getTravas().travar(inicio, fim);
+                try {
+                    if (conflitante(agenda, inicio, fim) != null) {
+                        throw new HorarioIndisponivelException("O médico " + nome + " já tem consulta às " + inicio);
+                    }
+                    if (conflitante(paciente.getAgenda(), inicio, fim) != null) {
+                        throw new HorarioIndisponivelException("O paciente " + paciente.getNome() + " já tem consulta às " + inicio);
+                    }
+                    agenda.put(inicio, consulta);
+                    paciente.adicionarConsulta(consulta);
+                    pacientes.registrar(paciente, inicio);
+                } finally {
+                    paciente.getTravas().destravar(inicio, fim);
+                }
+            } finally {
+                travas.destravar(inicio, fim);
+            }
+            return consulta;
+        }
+
+        /**
+         * Agenda no primeiro horário livre do dia, tentando de novo se outra
+         * thread ocupar o horário entre a busca e o agendamento.
+         */
+        private Consulta agendarNoDia(Paciente paciente, LocalDate dia) throws HorarioIndisponivelException {
+            LocalDateTime aPartirDe = dia.atTime(INICIO_EXPEDIENTE);
+            while (true) {
+                LocalDateTime inicio = proximoHorarioLivre(aPartirDe, Consulta.DURACAO_PADRAO);
+                if (!inicio.toLocalDate().equals(dia)) {
+                    throw new HorarioIndisponivelException("Não há horário livre para o médico " + nome + " na data: " + dia);
+                }
+                try {
+                    return agendarConsulta(paciente, inicio, Consulta.DURACAO_PADRAO);
+                } catch (HorarioIndisponivelException e) {
+                    if (isLivre(inicio, Consulta.DURACAO_PADRAO)) {
+                        throw e;
+                    }
+                    aPartirDe = inicio;
+                }
+            }
+        }
+
+        public boolean isLivre(LocalDateTime inicio, Duration duracao) {
+            return conflitante(agenda, inicio, inicio.plus(duracao)) == null;
+        }
+
+        /**
+         * As próximas {@code quantidade} consultas a partir do instante dado,
+         * incluindo uma que esteja em andamento; custa O(log n + quantidade).
+         */
+        public List<Consulta> proximasConsultas(LocalDateTime aPartirDe, int quantidade) {
+            List<Consulta> proximas = new ArrayList<>(Math.min(quantidade, agenda.size()));
+            Map.Entry<LocalDateTime, Consulta> anterior = agenda.lowerEntry(aPartirDe);
+            if (anterior != null && anterior.getValue().getFim().isAfter(aPartirDe) && quantidade > 0) {
+                proximas.add(anterior.getValue());
+            }
+            for (Consulta consulta : agenda.tailMap(aPartirDe, true).values()) {
+                if (proximas.size() >= quantidade) {
+                    break;
+                }
+                proximas.add(consulta);
+            }
+            return proximas;
+        }
+
+        /**
+         * Primeiro início, a partir do instante dado, em que cabe uma consulta
+         * da duração pedida dentro do expediente. Só percorre as consultas que
+         * ficam no caminho, então o histórico antigo não pesa na busca.
+         */
+        public LocalDateTime proximoHorarioLivre(LocalDateTime aPartirDe, Duration duracao) {
+            if (duracao.isNegative() || duracao.isZero()
+                    || duracao.compareTo(Duration.between(INICIO_EXPEDIENTE, FIM_EXPEDIENTE)) > 0) {
+                throw new IllegalArgumentException("Duração inválida: " + duracao);
+            }
+            LocalDateTime candidato = ajustarAoExpediente(aPartirDe, duracao);
+            while (true) {
+                Consulta bloqueio = conflitante(agenda, candidato, candidato.plus(duracao));
+                if (bloqueio == null) {
+                    return candidato;
+                }
+                candidato = ajustarAoExpediente(bloqueio.getFim(), duracao);
+            }
         }
 
         public void listarPacientes() {
             System.out.println("Pacientes do médico " + nome + ":");
-            consultas.stream()
-                    .map(Consulta::getPaciente)
-                    .distinct()
-                    .forEach((Paciente paciente) -> System.out.println(paciente.getNome()));
+            getPacientes().forEach((Paciente paciente) -> System.out.println(paciente.getNome()));
+        }
+
+        /**
+         * Pacientes distintos do médico, dos que têm mais consultas para os que
+         * têm menos; lidos do índice mantido a cada agendamento, em O(resultado).
+         */
+        public List<Paciente> getPacientes() {
+            return pacientes.topo(Integer.MAX_VALUE);
+        }
+
+        /**
+         * Os {@code k} pacientes com mais consultas com este médico.
+         */
+        public List<Paciente> listarPacientesFrequentes(int k) {
+            return pacientes.topo(k);
+        }
+
+        /**
+         * Quantidade de consultas e data da última, ou null se o paciente nunca se consultou aqui.
+         */
+        public Visitas getVisitas(Paciente paciente) {
+            return pacientes.visitas(paciente);
+        }
+
+        public int getTotalPacientes() {
+            return pacientes.tamanho();
+        }
+
+        boolean atende(Paciente paciente) {
+            return pacientes.visitas(paciente) != null;
         }
 
         public void exibirProximasConsultas() {
+            exibirProximasConsultas(LocalDateTime.now(), Integer.MAX_VALUE);
+        }
+
+        public void exibirProximasConsultas(LocalDateTime aPartirDe, int quantidade) {
             System.out.println("Próximas consultas para o médico " + nome + ":");
-            consultas.forEach(Consulta::exibir);
+            proximasConsultas(aPartirDe, quantidade).forEach(Consulta::exibir);
         }
 
         public String getNome() {
             return nome;
         }
+
+        private static LocalDateTime ajustarAoExpediente(LocalDateTime instante, Duration duracao) {
+            LocalTime hora = instante.toLocalTime();
+            if (hora.isBefore(INICIO_EXPEDIENTE)) {
+                return instante.toLocalDate().atTime(INICIO_EXPEDIENTE);
+            }
+            if (hora.plus(duracao).isAfter(FIM_EXPEDIENTE) || hora.plus(duracao).isBefore(hora)) {
+                return instante.toLocalDate().plusDays(1).atTime(INICIO_EXPEDIENTE);
+            }
+            return instante;
+        }
+    }
+
+    /**
+     * Uma trava por dia de agenda. Quem agenda trava, em ordem crescente,
+     * todos os dias que a consulta toca; duas consultas que se sobrepõem
+     * tocam pelo menos um dia em comum e por isso nunca são verificadas ao
+     * mesmo tempo. Como todo agendamento trava o médico antes do paciente, a
+     * ordem é sempre a mesma e não há impasse.
+     */
+    static final class TravasPorDia {
+        private final ConcurrentHashMap<Long, ReentrantLock> travas = new ConcurrentHashMap<>();
+
+        void travar(LocalDateTime inicio, LocalDateTime fim) {
+            for (long dia = primeiroDia(inicio); dia <= ultimoDia(inicio, fim); dia++) {
+                travas.computeIfAbsent(dia, d -> new ReentrantLock()).lock();
+            }
+        }
+
+        void destravar(LocalDateTime inicio, LocalDateTime fim) {
+            for (long dia = ultimoDia(inicio, fim); dia >= primeiroDia(inicio); dia--) {
+                travas.get(dia).unlock();
+            }
+        }
+
+        private static long primeiroDia(LocalDateTime inicio) {
+            return inicio.toLocalDate().toEpochDay();
+        }
+
+        private static long ultimoDia(LocalDateTime inicio, LocalDateTime fim) {
+            return fim.isAfter(inicio) ? fim.minusNanos(1).toLocalDate().toEpochDay() : primeiroDia(inicio);
+        }
+    }
+
+    /**
+     * Consultas de um paciente com um médico: quantas foram e quando é a mais recente.
+     */
+    public static final class Visitas {
+        private final Paciente paciente;
+        private final int quantidade;
+        private final LocalDateTime ultimaConsulta;
+
+        Visitas(Paciente paciente, int quantidade, LocalDateTime ultimaConsulta) {
+            this.paciente = paciente;
+            this.quantidade = quantidade;
+            this.ultimaConsulta = ultimaConsulta;
+        }
+
+        public Paciente getPaciente() {
+            return paciente;
+        }
+
+        public int getQuantidade() {
+            return quantidade;
+        }
+
+        public LocalDateTime getUltimaConsulta() {
+            return ultimaConsulta;
+        }
+    }
+
+    /**
+     * Pacientes distintos de um médico, atualizados a cada agendamento.
+     * A ordem por quantidade de consultas fica num skip list, então o top-K
+     * sai em O(K) e cada agendamento custa O(log n); empates ficam com o
+     * paciente cadastrado primeiro.
+     */
+    static final class PacientesDoMedico {
+        private static final Comparator<Visitas> ORDEM = Comparator
+                .comparingInt((Visitas v) -> v.quantidade).reversed()
+                .thenComparingLong(v -> v.paciente.getNumero());
+
+        private final ConcurrentSkipListSet<Visitas> ordem = new ConcurrentSkipListSet<>(ORDEM);
+        private final ConcurrentMap<Paciente, Visitas> atual = new ConcurrentHashMap<>();
+
+        void registrar(Paciente paciente, LocalDateTime inicio) {
+            atual.compute(paciente, (p, antiga) -> {
+                Visitas nova;
+                if (antiga == null) {
+                    nova = new Visitas(p, 1, inicio);
+                } else {
+                    ordem.remove(antiga);
+                    LocalDateTime ultima = inicio.isAfter(antiga.ultimaConsulta) ? inicio : antiga.ultimaConsulta;
+                    nova = new Visitas(antiga.paciente, antiga.quantidade + 1, ultima);
+                }
+                ordem.add(nova);
+                return nova;
+            });
+        }
+
+        Visitas visitas(Paciente paciente) {
+            return atual.get(paciente);
+        }
+
+        int tamanho() {
+            return atual.size();
+        }
+
+        Collection<Paciente> chaves() {
+            return atual.keySet();
+        }
+
+        List<Paciente> topo(int k) {
+            List<Paciente> resultado = new ArrayList<>(Math.min(k, atual.size()));
+            for (Visitas visitas : ordem) {
+                if (resultado.size() == k) {
+                    break;
+                }
+                resultado.add(visitas.paciente);
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Pacientes atendidos por todos os médicos informados. Percorre só os
+     * pacientes do médico com menos pacientes e consulta os índices dos demais.
+     */
+    public static List<Paciente> listarPacientesEmComum(Collection<Medico> medicos) {
+        List<Paciente> comuns = new ArrayList<>();
+        if (medicos.isEmpty()) {
+            return comuns;
+        }
+        Medico menor = null;
+        for (Medico medico : medicos) {
+            if (menor == null || medico.getTotalPacientes() < menor.getTotalPacientes()) {
+                menor = medico;
+            }
+        }
+        for (Paciente paciente : menor.pacientes.chaves()) {
+            boolean emTodos = true;
+            for (Medico medico : medicos) {
+                if (medico != menor && !medico.atende(paciente)) {
+                    emTodos = false;
+                    break;
+                }
+            }
+            if (emTodos) {
+                comuns.add(paciente);
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * A consulta da agenda que se sobrepõe a [inicio, fim), ou null.
+     * A agenda não tem sobreposições, então basta olhar a vizinha anterior e a seguinte.
+     */
+    static Consulta conflitante(NavigableMap<LocalDateTime, Consulta> agenda, LocalDateTime inicio, LocalDateTime fim) {
+        Map.Entry<LocalDateTime, Consulta> anterior = agenda.floorEntry(inicio);
+        if (anterior != null && anterior.getValue().getFim().isAfter(inicio)) {
+            return anterior.getValue();
+        }
+        Map.Entry<LocalDateTime, Consulta> seguinte = agenda.higherEntry(inicio);
+        if (seguinte != null && seguinte.getKey().isBefore(fim)) {
+            return seguinte.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Um horário livre encontrado na busca entre vários médicos.
+     */
+    public static class HorarioLivre {
+        private final Medico medico;
+        private final LocalDateTime inicio;
+
+        HorarioLivre(Medico medico, LocalDateTime inicio) {
+            this.medico = medico;
+            this.inicio = inicio;
+        }
+
+        public Medico getMedico() {
+            return medico;
+        }
+
+        public LocalDateTime getInicio() {
+            return inicio;
+        }
+    }
+
+    /**
+     * O horário livre mais cedo entre os médicos informados; em caso de
+     * empate fica o médico que aparece primeiro.
+     */
+    public static HorarioLivre buscarHorarioLivre(Collection<Medico> medicos, LocalDateTime aPartirDe, Duration duracao) {
+        HorarioLivre melhor = null;
+        for (Medico medico : medicos) {
+            LocalDateTime inicio = medico.proximoHorarioLivre(aPartirDe, duracao);
+            if (melhor == null || inicio.isBefore(melhor.getInicio())) {
+                melhor = new HorarioLivre(medico, inicio);
+            }
+        }
+        return melhor;
     }
 
     /**
      * Classe que representa um paciente.
      */
     public static class Paciente {
+        private static final AtomicLong SEQUENCIA = new AtomicLong();
+
         private final String nome;
-        private final List<Consulta> consultas = new ArrayList<>();
+        private final String documento;
+        private final long numero = SEQUENCIA.getAndIncrement();
+        private final NavigableMap<LocalDateTime, Consulta> agenda = new ConcurrentSkipListMap<>();
+        private final TravasPorDia travas = new TravasPorDia();
 
         public Paciente(String nome) {
+            this(nome, null);
+        }
+
+        /**
+         * Pacientes com o mesmo documento são o mesmo paciente nos índices dos
+         * médicos; sem documento, cada objeto é um paciente diferente.
+         */
+        public Paciente(String nome, String documento) {
             this.nome = Objects.requireNonNull(nome, "Nome não pode ser nulo");
+            this.documento = documento;
         }
 
         public void adicionarConsulta(Consulta consulta) {
-            consultas.add(Objects.requireNonNull(consulta, "Consulta não pode ser nula"));
+            Objects.requireNonNull(consulta, "Consulta não pode ser nula");
+            travas.travar(consulta.getInicio(), consulta.getFim());
+            try {
+                if (conflitante(agenda, consulta.getInicio(), consulta.getFim()) != null) {
+                    throw new IllegalArgumentException("O paciente " + nome + " já tem consulta às " + consulta.getInicio());
+                }
+                agenda.put(consulta.getInicio(), consulta);
+            } finally {
+                travas.destravar(consulta.getInicio(), consulta.getFim());
+            }
         }
 
         public void listarConsultas() {
             System.out.println("Consultas do paciente " + nome + ":");
-            consultas.forEach(Consulta::exibir);
+            agenda.values().forEach(Consulta::exibir);
+        }
+
+        NavigableMap<LocalDateTime, Consulta> getAgenda() {
+            return agenda;
+        }
+
+        TravasPorDia getTravas() {
+            return travas;
         }
 
         public String getNome() {
             return nome;
         }
+
+        public String getDocumento() {
+            return documento;
+        }
+
+        long getNumero() {
+            return numero;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (documento == null || !(o instanceof Paciente)) {
+                return false;
+            }
+            return documento.equals(((Paciente) o).documento);
+        }
+
+        @Override
+        public int hashCode() {
+            return documento != null ? documento.hashCode() : System.identityHashCode(this);
+        }
     }
 
     /**
      * Classe que representa uma consulta.
      */
     public static class Consulta {
+        public static final Duration DURACAO_PADRAO = Duration.ofMinutes(30);
+
         private final Medico medico;
         private final Paciente paciente;
-        private final String data;
+        private final LocalDateTime inicio;
+        private final Duration duracao;
 
-        public Consulta(Medico medico, Paciente paciente, String data) {
+        public Consulta(Medico medico, Paciente paciente, LocalDateTime inicio, Duration duracao) {
             this.medico = Objects.requireNonNull(medico, "Médico não pode ser nulo");
             this.paciente = Objects.requireNonNull(paciente, "Paciente não pode ser nulo");
-            this.data = Objects.requireNonNull(data, "Data não pode ser nula");
+            this.inicio = Objects.requireNonNull(inicio, "Data não pode ser nula");
+            this.duracao = Objects.requireNonNull(duracao, "Duração não pode ser nula");
+            if (duracao.isNegative() || duracao.isZero()) {
+                throw new IllegalArgumentException("Duração deve ser positiva");
+            }
         }
 
         public Medico getMedico() {
@@ -92,13 +545,447 @@ public class Clinica {
             return paciente;
         }
 
+        public LocalDateTime getInicio() {
+            return inicio;
+        }
+
+        public LocalDateTime getFim() {
+            return inicio.plus(duracao);
+        }
+
+        public Duration getDuracao() {
+            return duracao;
+        }
+
+        /**
+         * A data da consulta no formato ISO (aaaa-mm-dd).
+         */
         public String getData() {
-            return data;
+            return inicio.toLocalDate().toString();
         }
 
         public void exibir() {
-            System.out.println("Consulta com o médico: " + medico.getNome() + " - Paciente: " + paciente.getNome() + " - Data: " + data);
+            System.out.println("Consulta com o médico: " + medico.getNome() + " - Paciente: " + paciente.getNome() + " - Data: " + getData() + " " + inicio.toLocalTime());
+        }
+    }
+
+    /**
+     * Arquivo colunar de consultas, lido e escrito em fluxo por um FileChannel.
+     * Depois do cabeçalho (magic "CLIN", versão) vêm blocos de até
+     * {@code LINHAS_POR_BLOCO} consultas. Cada bloco traz primeiro as entradas
+     * novas dos dicionários de médicos e pacientes, depois as colunas: ids de
+     * médico, ids de paciente, início (segundos desde a época, sem fuso) e
+     * duração em segundos. Cada nome é gravado uma única vez e as linhas só
+     * carregam ids; um bloco com zero linhas encerra o arquivo. A memória usada
+     * é a de um bloco mais os dicionários, seja qual for o tamanho do arquivo.
+     * Nomes e documentos têm no máximo {@code TAMANHO_MAXIMO_TEXTO} bytes em UTF-8.
+     */
+    static final class ArquivoConsultas {
+        static final int MAGIC = 0x434C494E;
+        static final int VERSAO = 1;
+        static final int LINHAS_POR_BLOCO = 8192;
+        static final int TAMANHO_BUFFER = 1 << 20;
+        static final int TAMANHO_MAXIMO_TEXTO = 1 << 16;
+
+        private ArquivoConsultas() {
+        }
+    }
+
+    /**
+     * Recebe as consultas lidas de um arquivo, uma por chamada e sem criar objetos;
+     * os nomes são consultados no leitor pelos ids.
+     */
+    public interface ReceptorConsultas {
+        void consulta(int medico, int paciente, long inicioSegundos, int duracaoSegundos) throws IOException;
+    }
+
+    /**
+     * Grava consultas no formato de {@link ArquivoConsultas}. O arquivo é
+     * escrito num temporário e só substitui o destino em {@link #concluir()};
+     * um {@link #close()} sem conclusão (por exemplo, depois de uma falha)
+     * apaga o temporário e deixa o destino anterior intacto.
+     */
+    public static final class EscritorConsultas implements Closeable {
+        private final Path destino;
+        private final Path temporario;
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(ArquivoConsultas.TAMANHO_BUFFER);
+        private final Map<Medico, Integer> medicos = new IdentityHashMap<>();
+        private final Map<Paciente, Integer> pacientes = new HashMap<>();
+        private final List<Medico> novosMedicos = new ArrayList<>();
+        private final List<Paciente> novosPacientes = new ArrayList<>();
+        private final int[] colunaMedicos = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final int[] colunaPacientes = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final long[] colunaInicios = new long[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final int[] colunaDuracoes = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private int linhas;
+        private long total;
+        private boolean concluido;
+
+        public EscritorConsultas(Path destino) throws IOException {
+            this.destino = destino;
+            this.temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+            this.canal = FileChannel.open(temporario,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer.putInt(ArquivoConsultas.MAGIC).putInt(ArquivoConsultas.VERSAO);
+        }
+
+        public void escrever(Consulta consulta) throws IOException {
+            if (concluido) {
+                throw new IllegalStateException("Arquivo de consultas já concluído.");
+            }
+            long duracao = consulta.getDuracao().getSeconds();
+            if (duracao > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Duração grande demais para o arquivo: " + consulta.getDuracao());
+            }
+            Integer medico = medicos.get(consulta.getMedico());
+            Integer paciente = pacientes.get(consulta.getPaciente());
+            // Confere os textos antes de mexer nos dicionários: o bloco não pode ficar pela metade.
+            if (medico == null) {
+                conferirTexto(consulta.getMedico().getNome());
+            }
+            if (paciente == null) {
+                conferirTexto(consulta.getPaciente().getNome());
+                if (consulta.getPaciente().getDocumento() != null) {
+                    conferirTexto(consulta.getPaciente().getDocumento());
+                }
+            }
+            if (medico == null) {
+                medico = medicos.size();
+                medicos.put(consulta.getMedico(), medico);
+                novosMedicos.add(consulta.getMedico());
+            }
+            if (paciente == null) {
+                paciente = pacientes.size();
+                pacientes.put(consulta.getPaciente(), paciente);
+                novosPacientes.add(consulta.getPaciente());
+            }
+            colunaMedicos[linhas] = medico;
+            colunaPacientes[linhas] = paciente;
+            colunaInicios[linhas] = consulta.getInicio().toEpochSecond(ZoneOffset.UTC);
+            colunaDuracoes[linhas] = (int) duracao;
+            total++;
+            if (++linhas == ArquivoConsultas.LINHAS_POR_BLOCO) {
+                gravarBloco();
+            }
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Grava o último bloco e o terminador, sincroniza o temporário e o
+         * move sobre o destino. Só então o arquivo novo passa a valer.
+         */
+        public void concluir() throws IOException {
+            if (concluido) {
+                return;
+            }
+            if (linhas > 0) {
+                gravarBloco();
+            }
+            garantir(Integer.BYTES);
+            buffer.putInt(0);
+            descarregar();
+            canal.force(true);
+            canal.close();
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            concluido = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (concluido) {
+                return;
+            }
+            try {
+                canal.close();
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        }
+
+        private void gravarBloco() throws IOException {
+            garantir(Integer.BYTES * 2);
+            buffer.putInt(linhas).putInt(novosMedicos.size());
+            for (Medico medico : novosMedicos) {
+                gravarTexto(medico.getNome());
+            }
+            garantir(Integer.BYTES);
+            buffer.putInt(novosPacientes.size());
+            for (Paciente paciente : novosPacientes) {
+                gravarTexto(paciente.getNome());
+                garantir(1);
+                buffer.put((byte) (paciente.getDocumento() != null ? 1 : 0));
+                if (paciente.getDocumento() != null) {
+                    gravarTexto(paciente.getDocumento());
+                }
+            }
+            novosMedicos.clear();
+            novosPacientes.clear();
+            for (int i = 0; i < linhas; i++) {
+                garantir(Integer.BYTES);
+                buffer.putInt(colunaMedicos[i]);
+            }
+            for (int i = 0; i < linhas; i++) {
+                garantir(Integer.BYTES);
+                buffer.putInt(colunaPacientes[i]);
+            }
+            for (int i = 0; i < linhas; i++) {
+                garantir(Long.BYTES);
+                buffer.putLong(colunaInicios[i]);
+            }
+            for (int i = 0; i < linhas; i++) {
+                garantir(Integer.BYTES);
+                buffer.putInt(colunaDuracoes[i]);
+            }
+            linhas = 0;
+        }
+
+        private static void conferirTexto(String texto) {
+            // Cada char ocupa no máximo 3 bytes em UTF-8; só codifica quando pode passar do limite.
+            if ((long) texto.length() * 3 > ArquivoConsultas.TAMANHO_MAXIMO_TEXTO
+                    && texto.getBytes(StandardCharsets.UTF_8).length > ArquivoConsultas.TAMANHO_MAXIMO_TEXTO) {
+                throw new IllegalArgumentException("Texto grande demais para o arquivo de consultas: "
+                        + texto.length() + " caracteres");
+            }
+        }
+
+        private void gravarTexto(String texto) throws IOException {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            garantir(Integer.BYTES);
+            buffer.putInt(bytes.length);
+            for (int escritos = 0; escritos < bytes.length; ) {
+                garantir(1);
+                int parte = Math.min(buffer.remaining(), bytes.length - escritos);
+                buffer.put(bytes, escritos, parte);
+                escritos += parte;
+            }
+        }
+
+        private void garantir(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                descarregar();
+            }
+        }
+
+        private void descarregar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Lê em fluxo um arquivo gravado pelo {@link EscritorConsultas}.
+     */
+    public static final class LeitorConsultas implements Closeable {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(ArquivoConsultas.TAMANHO_BUFFER);
+        private final List<String> medicos = new ArrayList<>();
+        private final List<String> nomesPacientes = new ArrayList<>();
+        private final List<String> documentos = new ArrayList<>();
+        private final int[] colunaMedicos = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final int[] colunaPacientes = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final long[] colunaInicios = new long[ArquivoConsultas.LINHAS_POR_BLOCO];
+        private final int[] colunaDuracoes = new int[ArquivoConsultas.LINHAS_POR_BLOCO];
+
+        public LeitorConsultas(Path arquivo) throws IOException {
+            this.canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+            try {
+                buffer.limit(0);
+                garantir(Integer.BYTES * 2);
+                if (buffer.getInt() != ArquivoConsultas.MAGIC) {
+                    throw new IOException("Arquivo de consultas inválido: " + arquivo);
+                }
+                int versao = buffer.getInt();
+                if (versao != ArquivoConsultas.VERSAO) {
+                    throw new IOException("Versão de arquivo de consultas não suportada: " + versao);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Quem chamou nunca recebe o leitor, então o canal é fechado aqui.
+                try {
+                    canal.close();
+                } catch (IOException aoFechar) {
+                    e.addSuppressed(aoFechar);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Entrega todas as consultas ao receptor, bloco a bloco, e retorna quantas foram lidas.
+         */
+        public long ler(ReceptorConsultas receptor) throws IOException {
+            long total = 0;
+            while (true) {
+                garantir(Integer.BYTES);
+                int linhas = buffer.getInt();
+                if (linhas == 0) {
+                    return total;
+                }
+                if (linhas < 0 || linhas > ArquivoConsultas.LINHAS_POR_BLOCO) {
+                    throw new IOException("Bloco de consultas corrompido: " + linhas + " linhas");
+                }
+                garantir(Integer.BYTES);
+                int novosMedicos = buffer.getInt();
+                for (int i = 0; i < novosMedicos; i++) {
+                    medicos.add(lerTexto());
+                }
+                garantir(Integer.BYTES);
+                int novosPacientes = buffer.getInt();
+                for (int i = 0; i < novosPacientes; i++) {
+                    nomesPacientes.add(lerTexto());
+                    garantir(1);
+                    documentos.add(buffer.get() != 0 ? lerTexto() : null);
+                }
+                for (int i = 0; i < linhas; i++) {
+                    garantir(Integer.BYTES);
+                    colunaMedicos[i] = buffer.getInt();
+                }
+                for (int i = 0; i < linhas; i++) {
+                    garantir(Integer.BYTES);
+                    colunaPacientes[i] = buffer.getInt();
+                }
+                for (int i = 0; i < linhas; i++) {
+                    garantir(Long.BYTES);
+                    colunaInicios[i] = buffer.getLong();
+                }
+                for (int i = 0; i < linhas; i++) {
+                    garantir(Integer.BYTES);
+                    colunaDuracoes[i] = buffer.getInt();
+                }
+                for (int i = 0; i < linhas; i++) {
+                    if (colunaMedicos[i] < 0 || colunaMedicos[i] >= medicos.size()
+                            || colunaPacientes[i] < 0 || colunaPacientes[i] >= nomesPacientes.size()) {
+                        throw new IOException("Consulta com médico ou paciente desconhecido");
+                    }
+                    receptor.consulta(colunaMedicos[i], colunaPacientes[i], colunaInicios[i], colunaDuracoes[i]);
+                }
+                total += linhas;
+            }
+        }
+
+        public String getNomeMedico(int id) {
+            return medicos.get(id);
+        }
+
+        public String getNomePaciente(int id) {
+            return nomesPacientes.get(id);
+        }
+
+        public String getDocumentoPaciente(int id) {
+            return documentos.get(id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+
+        private String lerTexto() throws IOException {
+            garantir(Integer.BYTES);
+            int tamanho = buffer.getInt();
+            if (tamanho < 0 || tamanho > ArquivoConsultas.TAMANHO_MAXIMO_TEXTO) {
+                throw new IOException("Texto corrompido no arquivo de consultas: " + tamanho + " bytes");
+            }
+            byte[] bytes = new byte[tamanho];
+            for (int lidos = 0; lidos < tamanho; ) {
+                garantir(1);
+                int parte = Math.min(buffer.remaining(), tamanho - lidos);
+                buffer.get(bytes, lidos, parte);
+                lidos += parte;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void garantir(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (canal.read(buffer) < 0) {
+                    throw new EOFException("Arquivo de consultas truncado");
+                }
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Resultado de uma importação: os médicos criados e quantas consultas
+     * entraram ou foram recusadas por conflito de horário.
+     */
+    public static final class Importacao {
+        private final List<Medico> medicos;
+        private final long importadas;
+        private final long recusadas;
+
+        Importacao(List<Medico> medicos, long importadas, long recusadas) {
+            this.medicos = medicos;
+            this.importadas = importadas;
+            this.recusadas = recusadas;
+        }
+
+        public List<Medico> getMedicos() {
+            return medicos;
+        }
+
+        public long getImportadas() {
+            return importadas;
+        }
+
+        public long getRecusadas() {
+            return recusadas;
+        }
+    }
+
+    /**
+     * Exporta as agendas dos médicos em ordem cronológica e retorna quantas consultas foram gravadas.
+     */
+    public static long exportar(Path arquivo, Collection<Medico> medicos) throws IOException {
+        try (EscritorConsultas escritor = new EscritorConsultas(arquivo)) {
+            for (Medico medico : medicos) {
+                for (Consulta consulta : medico.agenda.values()) {
+                    escritor.escrever(consulta);
+                }
+            }
+            escritor.concluir();
+            return escritor.getTotal();
+        }
+    }
+
+    /**
+     * Importa um arquivo de consultas, criando um médico e um paciente por
+     * entrada dos dicionários e agendando cada consulta pelo caminho normal.
+     */
+    public static Importacao importar(Path arquivo) throws IOException {
+        List<Medico> medicos = new ArrayList<>();
+        List<Paciente> pacientes = new ArrayList<>();
+        long[] recusadas = new long[1];
+        long lidas;
+        try (LeitorConsultas leitor = new LeitorConsultas(arquivo)) {
+            lidas = leitor.ler((medico, paciente, inicio, duracao) -> {
+                while (medicos.size() <= medico) {
+                    medicos.add(new Medico(leitor.getNomeMedico(medicos.size())));
+                }
+                while (pacientes.size() <= paciente) {
+                    int id = pacientes.size();
+                    pacientes.add(new Paciente(leitor.getNomePaciente(id), leitor.getDocumentoPaciente(id)));
+                }
+                try {
+                    medicos.get(medico).agendarConsulta(pacientes.get(paciente),
+                            LocalDateTime.ofEpochSecond(inicio, 0, ZoneOffset.UTC), Duration.ofSeconds(duracao));
+                } catch (HorarioIndisponivelException e) {
+                    recusadas[0]++;
+                }
+            });
         }
+        return new Importacao(medicos, lidas - recusadas[0], recusadas[0]);
     }
 
     public static void main(String[] args) {
@@ -122,8 +1009,9 @@ public class Clinica {
 
         // Exibindo próximas consultas
         System.out.println("--- Próximas Consultas ---");
-        drRobson.exibirProximasConsultas();  // Esperado: Consulta de Lívia e Natan
-        drLuan.exibirProximasConsultas();   // Esperado: Consulta de Lívia
+        LocalDateTime referencia = LocalDate.of(2024, 9, 1).atStartOfDay();
+        drRobson.exibirProximasConsultas(referencia, 10);  // Esperado: Consulta de Lívia e Natan
+        drLuan.exibirProximasConsultas(referencia, 10);   // Esperado: Consulta de Lívia
 
         // Listando consultas de um paciente
         System.out.println("--- Consultas do Paciente Lívia ---");
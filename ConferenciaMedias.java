@@ -0,0 +1,114 @@
+package estudante;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Classe ConferenciaMedias: sorteia matrículas, notas e cadastros no quadro de notas
+// e confere as médias acumuladas de estudantes e disciplinas contra a média
+// recalculada nota a nota. Um terço dos estudantes começa no quadro, outro terço
+// muda para ele no meio, levando as notas que já tinham, e o resto fica fora.
+//
+// Uso: java estudante.ConferenciaMedias [operacoes] [semente]
+public class ConferenciaMedias {
+
+    private static final double TOLERANCIA = 1e-9;
+
+    public static void main(String[] args) {
+        int operacoes = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 3;
+        Random aleatorio = new Random(semente);
+
+        QuadroNotas quadro = new QuadroNotas();
+        List<Disciplina> disciplinas = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            disciplinas.add(new Disciplina("Disciplina " + i));
+        }
+        List<Estudante> estudantes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Estudante estudante = new Estudante("Estudante " + i);
+            if (i % 3 == 0) {
+                quadro.cadastrar(estudante);
+            }
+            estudantes.add(estudante);
+        }
+
+        for (int i = 0; i < operacoes; i++) {
+            int indice = aleatorio.nextInt(estudantes.size());
+            Estudante estudante = estudantes.get(indice);
+            Disciplina disciplina = disciplinas.get(aleatorio.nextInt(disciplinas.size()));
+            int operacao = aleatorio.nextInt(10);
+            if (operacao == 0) {
+                if (aleatorio.nextBoolean()) {
+                    disciplina.matricularEstudante(estudante);
+                } else {
+                    estudante.matricularDisciplina(disciplina);
+                }
+            } else if (operacao == 1 && indice % 3 == 1 && estudante.getQuadro() == null
+                    && aleatorio.nextInt(50) == 0) {
+                quadro.cadastrar(estudante);
+            } else if (estudante.getNotas().containsKey(disciplina)) {
+                estudante.atribuirNota(disciplina, aleatorio.nextDouble() * 10);
+            } else {
+                try {
+                    estudante.atribuirNota(disciplina, 5);
+                    throw new IllegalStateException("Nota aceita sem matrícula em " + disciplina.getNome());
+                } catch (IllegalArgumentException esperado) {
+                    // Sem matrícula a nota é recusada.
+                }
+            }
+        }
+
+        double erroMaximo = 0;
+        int foraDoQuadro = 0;
+        for (Estudante estudante : estudantes) {
+            Map<Disciplina, Double> notas = estudante.getNotas();
+            if (estudante.getQuadro() == null) {
+                foraDoQuadro++;
+                conferirSomenteLeitura(estudante, notas);
+            }
+            double soma = 0;
+            for (double nota : notas.values()) {
+                soma += nota;
+            }
+            double esperada = notas.isEmpty() ? 0 : soma / notas.size();
+            erroMaximo = Math.max(erroMaximo, Math.abs(esperada - estudante.calcularMedia()));
+        }
+        for (Disciplina disciplina : disciplinas) {
+            double soma = 0;
+            int total = 0;
+            for (Estudante estudante : estudantes) {
+                Double nota = estudante.getNotas().get(disciplina);
+                if (nota != null) {
+                    soma += nota;
+                    total++;
+                }
+            }
+            if (total != disciplina.getTotalNotas()) {
+                throw new IllegalStateException(disciplina.getNome() + " conta " + disciplina.getTotalNotas()
+                        + " notas, mas os estudantes têm " + total);
+            }
+            double esperada = total == 0 ? 0 : soma / total;
+            erroMaximo = Math.max(erroMaximo, Math.abs(esperada - disciplina.calcularMedia()));
+        }
+        if (erroMaximo > TOLERANCIA) {
+            throw new IllegalStateException("Média acumulada diverge da recalculada em " + erroMaximo);
+        }
+        System.out.println(operacoes + " operações, " + foraDoQuadro + " estudantes fora do quadro; erro máximo "
+                + erroMaximo);
+        System.out.println("Médias conferidas: OK");
+    }
+
+    private static void conferirSomenteLeitura(Estudante estudante, Map<Disciplina, Double> notas) {
+        if (notas.isEmpty()) {
+            return;
+        }
+        try {
+            notas.replaceAll((disciplina, nota) -> 10.0);
+        } catch (UnsupportedOperationException esperado) {
+            return;
+        }
+        throw new IllegalStateException("getNotas() de " + estudante.getNome() + " permite alterar as notas");
+    }
+}
@@ -1,28 +1,389 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 // Classe Produto
 class Produto {
     private String nome;
     private double preco;
-    private int estoque;
+    private volatile int estoque;
+    private volatile int pontoPedido = -1;
+    private int id = -1;
+    private RazaoEstoque razao;
+    private volatile MonitorEstoque monitor;
+    private volatile EstoqueFatiado disponivel;
+    private final LongAdder reservado = new LongAdder();
 
     public Produto(String nome, double preco, int estoque) {
         this.nome = nome;
         this.preco = preco;
         this.estoque = estoque;
+        this.disponivel = new EstoqueFatiado(estoque);
     }
 
     public String getNome() {
         return nome;
     }
 
+    public double getPreco() {
+        return preco;
+    }
+
+    // Estoque físico, incluindo as unidades reservadas e ainda não baixadas
     public int getEstoque() {
         return estoque;
     }
 
+    // Unidades livres para reserva; sob concorrência é uma leitura aproximada
+    public long getDisponivel() {
+        return disponivel.total();
+    }
+
+    public long getReservado() {
+        return reservado.sum();
+    }
+
+    // Id no razão de estoque, ou -1 se o produto não foi cadastrado
+    public int getId() {
+        return id;
+    }
+
+    RazaoEstoque getRazao() {
+        return razao;
+    }
+
+    // Com razão, a entrada é lançada no log; sem razão, o estoque muda direto
     public void adicionarEstoque(int quantidade) {
-        this.estoque += quantidade;
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser positiva");
+        }
+        if (razao != null) {
+            try {
+                razao.entrada(this, quantidade, null, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            synchronized (this) {
+                mudarEstoque(estoque + quantidade);
+            }
+        }
+    }
+
+    // Com razão, a saída é lançada no log; o estoque nunca fica negativo
+    public void retirarEstoque(int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser positiva");
+        }
+        if (razao != null) {
+            try {
+                razao.saida(this, quantidade, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            if (!disponivel.retirar(quantidade)) {
+                throw new IllegalArgumentException("Estoque insuficiente de " + nome + ": " + getDisponivel() + " unidades disponíveis");
+            }
+            synchronized (this) {
+                mudarEstoque(estoque - quantidade);
+            }
+        }
+    }
+
+    // Método para separar unidades sem travas; retorna null se não houver disponível
+    public ReservaEstoque reservar(int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser positiva");
+        }
+        if (!disponivel.retirar(quantidade)) {
+            return null;
+        }
+        reservado.add(quantidade);
+        return new ReservaEstoque(this, quantidade);
+    }
+
+    // Baixa as unidades reservadas do estoque físico (no razão, se houver)
+    boolean confirmar(ReservaEstoque reserva, long pedido) {
+        if (!reserva.concluir(ReservaEstoque.CONFIRMADA)) {
+            return false;
+        }
+        reservado.add(-reserva.getQuantidade());
+        if (razao != null) {
+            try {
+                razao.baixarReserva(this, reserva.getQuantidade(), pedido);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            synchronized (this) {
+                mudarEstoque(estoque - reserva.getQuantidade());
+            }
+        }
+        return true;
+    }
+
+    // Devolve as unidades reservadas ao disponível
+    boolean liberar(ReservaEstoque reserva) {
+        if (!reserva.concluir(ReservaEstoque.LIBERADA)) {
+            return false;
+        }
+        reservado.add(-reserva.getQuantidade());
+        disponivel.depositar(reserva.getQuantidade());
+        return true;
+    }
+
+    // Ponto de pedido: quando o estoque chega nele ou abaixo, o monitor avisa; -1 desliga
+    public void definirPontoPedido(int pontoPedido) {
+        this.pontoPedido = pontoPedido;
+    }
+
+    public int getPontoPedido() {
+        return pontoPedido;
+    }
+
+    void vincular(RazaoEstoque razao, int id) {
+        this.razao = razao;
+        this.id = id;
+    }
+
+    synchronized void vincular(MonitorEstoque monitor) {
+        if (this.monitor != null && this.monitor != monitor) {
+            throw new IllegalArgumentException("O produto " + nome + " já é acompanhado por outro monitor");
+        }
+        this.monitor = monitor;
+    }
+
+    void definirEstoque(int estoque) {
+        mudarEstoque(estoque);
+    }
+
+    boolean tomarDisponivel(int quantidade) {
+        return disponivel.retirar(quantidade);
+    }
+
+    void devolverDisponivel(int quantidade) {
+        disponivel.depositar(quantidade);
+    }
+
+    // Depois da recuperação do razão não há reservas: tudo o que existe está disponível
+    void reiniciarDisponivel() {
+        disponivel = new EstoqueFatiado(estoque);
+    }
+
+    // Chamado sempre com a trava do produto ou do razão, então as mudanças chegam em ordem ao monitor.
+    // Entradas vão para o disponível depois do físico; retiradas já saíram do disponível antes,
+    // então disponível + reservado nunca passa do físico e o físico nunca fica negativo.
+    private void mudarEstoque(int novo) {
+        int anterior = estoque;
+        estoque = novo;
+        if (novo > anterior) {
+            disponivel.depositar(novo - anterior);
+        }
+        MonitorEstoque acompanhamento = monitor;
+        if (acompanhamento != null) {
+            acompanhamento.atualizar(this, anterior, novo);
+        }
+    }
+}
+
+// Classe ReservaEstoque: unidades separadas de um produto, até serem confirmadas ou liberadas
+class ReservaEstoque {
+    static final int PENDENTE = 0;
+    static final int CONFIRMADA = 1;
+    static final int LIBERADA = 2;
+
+    private final Produto produto;
+    private final int quantidade;
+    private final AtomicInteger estado = new AtomicInteger(PENDENTE);
+
+    ReservaEstoque(Produto produto, int quantidade) {
+        this.produto = produto;
+        this.quantidade = quantidade;
+    }
+
+    public Produto getProduto() {
+        return produto;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    // Baixa as unidades do estoque; retorna false se a reserva já foi concluída
+    public boolean confirmar() {
+        return produto.confirmar(this, 0);
+    }
+
+    public boolean confirmar(long pedido) {
+        return produto.confirmar(this, pedido);
+    }
+
+    // Devolve as unidades ao disponível; retorna false se a reserva já foi concluída
+    public boolean liberar() {
+        return produto.liberar(this);
+    }
+
+    public boolean isPendente() {
+        return estado.get() == PENDENTE;
+    }
+
+    boolean concluir(int novoEstado) {
+        return estado.compareAndSet(PENDENTE, novoEstado);
+    }
+}
+
+// Classe EstoqueFatiado: unidades disponíveis de um produto, espalhadas em fatias
+// no estilo do LongAdder. Começa com uma fatia; quando duas threads disputam a
+// mesma, o número de fatias dobra (até o número de processadores) e cada thread
+// passa a usar a sua. Nenhuma fatia fica negativa: retirar é um CAS que só aceita
+// se a fatia tem o suficiente. Quando a fatia da thread não basta, a reconciliação
+// junta o saldo de todas sob uma trava, retira o pedido e redistribui o resto.
+class EstoqueFatiado {
+    // 8 longs = 64 bytes por fatia, para duas fatias não dividirem a mesma linha de cache
+    private static final int ESPACO = 8;
+    private static final long APOSENTADA = -1;
+    private static final int MAXIMO_FATIAS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    private static final ThreadLocal<int[]> SONDA = ThreadLocal.withInitial(
+            () -> new int[] { (int) (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 32) | 1 });
+
+    private volatile AtomicLongArray fatias;
+
+    EstoqueFatiado(long inicial) {
+        fatias = new AtomicLongArray(ESPACO);
+        fatias.set(0, inicial);
+    }
+
+    void depositar(long quantidade) {
+        while (true) {
+            AtomicLongArray atual = fatias;
+            int indice = indice(atual);
+            long valor = atual.get(indice);
+            if (valor == APOSENTADA) {
+                continue;
+            }
+            if (atual.compareAndSet(indice, valor, valor + quantidade)) {
+                return;
+            }
+            disputa(atual);
+        }
+    }
+
+    boolean retirar(long quantidade) {
+        while (true) {
+            AtomicLongArray atual = fatias;
+            int indice = indice(atual);
+            long valor = atual.get(indice);
+            if (valor == APOSENTADA) {
+                continue;
+            }
+            if (valor < quantidade) {
+                return reconciliar(quantidade);
+            }
+            if (atual.compareAndSet(indice, valor, valor - quantidade)) {
+                return true;
+            }
+            disputa(atual);
+        }
+    }
+
+    long total() {
+        AtomicLongArray atual = fatias;
+        long total = 0;
+        for (int i = 0; i < atual.length(); i += ESPACO) {
+            long valor = atual.get(i);
+            if (valor > 0) {
+                total += valor;
+            }
+        }
+        return total;
+    }
+
+    // Só uma reconciliação por vez, e a troca de fatias usa a mesma trava, então o arranjo
+    // não muda aqui dentro. Retiradas rápidas que falharem enquanto as fatias estão zeradas
+    // caem aqui e esperam, então ninguém vê "sem estoque" por causa de outra reconciliação.
+    private synchronized boolean reconciliar(long quantidade) {
+        AtomicLongArray atual = fatias;
+        long total = 0;
+        for (int i = 0; i < atual.length(); i += ESPACO) {
+            total += atual.getAndSet(i, 0);
+        }
+        boolean retirado = total >= quantidade;
+        if (retirado) {
+            total -= quantidade;
+        }
+        int quantidadeFatias = atual.length() / ESPACO;
+        for (int i = 0; i < quantidadeFatias; i++) {
+            long parte = total / quantidadeFatias + (i < total % quantidadeFatias ? 1 : 0);
+            if (parte > 0) {
+                atual.addAndGet(i * ESPACO, parte);
+            }
+        }
+        return retirado;
+    }
+
+    private void disputa(AtomicLongArray atual) {
+        int[] sonda = SONDA.get();
+        sonda[0] ^= sonda[0] << 13;
+        sonda[0] ^= sonda[0] >>> 17;
+        sonda[0] ^= sonda[0] << 5;
+        if (atual.length() / ESPACO < MAXIMO_FATIAS) {
+            expandir(atual);
+        }
+    }
+
+    // Publica o arranjo novo antes de esvaziar o antigo; quem ainda operar no antigo
+    // encontra a fatia aposentada e tenta de novo no novo
+    private synchronized void expandir(AtomicLongArray antigas) {
+        if (fatias != antigas) {
+            return;
+        }
+        AtomicLongArray novas = new AtomicLongArray(antigas.length() * 2);
+        fatias = novas;
+        long total = 0;
+        for (int i = 0; i < antigas.length(); i += ESPACO) {
+            total += antigas.getAndSet(i, APOSENTADA);
+        }
+        novas.addAndGet(0, total);
+    }
+
+    private static int indice(AtomicLongArray atual) {
+        return (SONDA.get()[0] & (atual.length() / ESPACO - 1)) * ESPACO;
     }
 }
 
@@ -41,20 +402,1043 @@ class Fornecedor {
 
 // Classe Pedido
 class Pedido {
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    private final long numero = proximoNumero();
     private Fornecedor fornecedor;
     private Produto produto;
     private int quantidade;
 
     public Pedido(Fornecedor fornecedor, Produto produto, int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade do pedido deve ser positiva");
+        }
         this.fornecedor = fornecedor;
         this.produto = produto;
         this.quantidade = quantidade;
     }
 
+    // Pedidos individuais e pedidos de compra consolidados usam a mesma numeração
+    static long proximoNumero() {
+        return SEQUENCIA.incrementAndGet();
+    }
+
+    public long getNumero() {
+        return numero;
+    }
+
+    public Fornecedor getFornecedor() {
+        return fornecedor;
+    }
+
+    public Produto getProduto() {
+        return produto;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    // Com razão, a entrada fica registrada com o fornecedor e o número do pedido
     public void realizarPedido() {
         System.out.println("Pedido realizado para " + quantidade + " unidades de " + produto.getNome() +
                            " com o fornecedor " + fornecedor.getNome() + ".");
-        produto.adicionarEstoque(quantidade);
+        if (produto.getRazao() != null) {
+            try {
+                produto.getRazao().entrada(produto, quantidade, fornecedor, numero);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            produto.adicionarEstoque(quantidade);
+        }
+    }
+}
+
+// Classe Movimento: um lançamento do razão de estoque
+class Movimento {
+    enum Tipo { ENTRADA, SAIDA, AJUSTE }
+
+    private final Tipo tipo;
+    private final int produto;
+    private final int quantidade;
+    private final int fornecedor;
+    private final long pedido;
+    private final long instante;
+
+    public Movimento(Tipo tipo, int produto, int quantidade, int fornecedor, long pedido, long instante) {
+        this.tipo = tipo;
+        this.produto = produto;
+        this.quantidade = quantidade;
+        this.fornecedor = fornecedor;
+        this.pedido = pedido;
+        this.instante = instante;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    // Id do produto no razão
+    public int getProduto() {
+        return produto;
+    }
+
+    // Variação do estoque: positiva na entrada, negativa na saída, com sinal no ajuste
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    // Id do fornecedor no razão, ou -1
+    public int getFornecedor() {
+        return fornecedor;
+    }
+
+    // Número do pedido, ou 0
+    public long getPedido() {
+        return pedido;
+    }
+
+    public long getInstante() {
+        return instante;
+    }
+}
+
+// Classe HistoricoSaldo: saldo de um produto depois de cada instante, para consultas no passado.
+// A cada snapshot fica só o último registro; consultas anteriores a ele vão ao log.
+class HistoricoSaldo {
+    private long[] instantes = new long[4];
+    private int[] saldos = new int[4];
+    private int tamanho;
+
+    void registrar(long instante, int saldo) {
+        if (tamanho > 0 && instantes[tamanho - 1] == instante) {
+            saldos[tamanho - 1] = saldo;
+            return;
+        }
+        if (tamanho == instantes.length) {
+            instantes = Arrays.copyOf(instantes, tamanho * 2);
+            saldos = Arrays.copyOf(saldos, tamanho * 2);
+        }
+        instantes[tamanho] = instante;
+        saldos[tamanho] = saldo;
+        tamanho++;
+    }
+
+    boolean cobre(long instante) {
+        return tamanho > 0 && instantes[0] <= instante;
+    }
+
+    // Descarta tudo menos o último registro, que continua valendo até o próximo movimento
+    void podar() {
+        if (tamanho <= 1) {
+            return;
+        }
+        long ultimoInstante = instantes[tamanho - 1];
+        int ultimoSaldo = saldos[tamanho - 1];
+        instantes = new long[4];
+        saldos = new int[4];
+        instantes[0] = ultimoInstante;
+        saldos[0] = ultimoSaldo;
+        tamanho = 1;
+    }
+
+    // Busca binária pelo último registro até o instante; só vale se cobre(instante)
+    int saldoEm(long instante) {
+        int baixo = 0;
+        int alto = tamanho - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (instantes[meio] <= instante) {
+                baixo = meio;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return saldos[baixo];
+    }
+}
+
+// Classe RazaoEstoque: log só de acréscimo com todos os movimentos de estoque.
+// O estado dos produtos é derivado do log. Snapshots periódicos guardam o
+// estoque de cada produto e a posição do log até onde ele foi aplicado, então a
+// recuperação lê o snapshot e reaplica só a cauda. O log nunca é truncado e
+// continua servindo de auditoria e para consultas de estoque em qualquer instante.
+class RazaoEstoque implements Closeable {
+    static final String ARQUIVO_LOG = "estoque.log";
+    static final String ARQUIVO_SNAPSHOT = "estoque.snap";
+    static final int MAGIC = 0x45535451;
+    static final int VERSAO = 1;
+
+    private static final byte REGISTRO_PRODUTO = 1;
+    private static final byte REGISTRO_FORNECEDOR = 2;
+    private static final byte REGISTRO_MOVIMENTO = 3;
+    private static final int TAMANHO_MOVIMENTO = 1 + 1 + Long.BYTES + Integer.BYTES * 3 + Long.BYTES;
+
+    private final Path diretorio;
+    private final FileChannel log;
+    private final ByteBuffer pendentes = ByteBuffer.allocateDirect(1 << 16);
+    private final List<Produto> produtos = new ArrayList<>();
+    private final List<HistoricoSaldo> historicos = new ArrayList<>();
+    private final List<Fornecedor> fornecedores = new ArrayList<>();
+    private final Map<String, Integer> idsFornecedores = new HashMap<>();
+    private Clock relogio = Clock.systemUTC();
+    private long ultimoInstante = Long.MIN_VALUE;
+    private long posicaoLog;
+    private long posicaoSnapshot;
+    private int intervaloSnapshot = 1_000_000;
+    private int desdeSnapshot;
+
+    private RazaoEstoque(Path diretorio, FileChannel log) {
+        this.diretorio = diretorio;
+        this.log = log;
+    }
+
+    // Método para abrir o razão do diretório, recuperando snapshot e cauda do log
+    public static RazaoEstoque abrir(Path diretorio) throws IOException {
+        Files.createDirectories(diretorio);
+        FileChannel log = FileChannel.open(diretorio.resolve(ARQUIVO_LOG),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        RazaoEstoque razao = new RazaoEstoque(diretorio, log);
+        try {
+            razao.recuperar();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return razao;
+    }
+
+    public synchronized void definirRelogio(Clock relogio) {
+        this.relogio = relogio;
+    }
+
+    // Método para definir de quantos em quantos movimentos um snapshot é gravado
+    public synchronized void definirIntervaloSnapshot(int movimentos) {
+        if (movimentos <= 0) {
+            throw new IllegalArgumentException("Intervalo de snapshot deve ser positivo");
+        }
+        this.intervaloSnapshot = movimentos;
+    }
+
+    // Método para cadastrar um produto; o estoque inicial entra como ajuste
+    public synchronized int cadastrar(Produto produto) throws IOException {
+        if (produto.getRazao() == this) {
+            return produto.getId();
+        }
+        if (produto.getRazao() != null) {
+            throw new IllegalArgumentException("O produto " + produto.getNome() + " já pertence a outro razão");
+        }
+        int inicial = produto.getEstoque();
+        int id = produtos.size();
+        byte[] nome = produto.getNome().getBytes(StandardCharsets.UTF_8);
+        garantir(1 + Integer.BYTES * 2 + Double.BYTES + nome.length);
+        pendentes.put(REGISTRO_PRODUTO).putInt(id).putDouble(produto.getPreco()).putInt(nome.length).put(nome);
+        incluirProduto(produto);
+        if (inicial != 0) {
+            lancar(Movimento.Tipo.AJUSTE, produto, 0, inicial, -1, 0);
+        } else {
+            historicos.get(id).registrar(agora(), 0);
+        }
+        return id;
+    }
+
+    // Método para cadastrar um fornecedor pelo nome; fornecedores de pedidos são cadastrados sozinhos
+    public synchronized int cadastrar(Fornecedor fornecedor) throws IOException {
+        Integer id = idsFornecedores.get(fornecedor.getNome());
+        if (id != null) {
+            return id;
+        }
+        id = fornecedores.size();
+        byte[] nome = fornecedor.getNome().getBytes(StandardCharsets.UTF_8);
+        garantir(1 + Integer.BYTES * 2 + nome.length);
+        pendentes.put(REGISTRO_FORNECEDOR).putInt(id).putInt(nome.length).put(nome);
+        fornecedores.add(fornecedor);
+        idsFornecedores.put(fornecedor.getNome(), id);
+        return id;
+    }
+
+    public synchronized Movimento entrada(Produto produto, int quantidade, Fornecedor fornecedor, long pedido) throws IOException {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser positiva");
+        }
+        int idFornecedor = fornecedor == null ? -1 : cadastrar(fornecedor);
+        return lancar(Movimento.Tipo.ENTRADA, produto, quantidade, idFornecedor, pedido);
+    }
+
+    // Método para dar entrada de um pedido de compra inteiro com uma só aquisição da trava
+    public synchronized void receber(PedidoCompra compra) throws IOException {
+        for (Map.Entry<Produto, Integer> linha : compra.getLinhas().entrySet()) {
+            entrada(linha.getKey(), linha.getValue(), compra.getFornecedor(), compra.getNumero());
+        }
+    }
+
+    public synchronized Movimento saida(Produto produto, int quantidade, long pedido) throws IOException {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser positiva");
+        }
+        verificar(produto);
+        if (!produto.tomarDisponivel(quantidade)) {
+            throw new IllegalArgumentException("Estoque insuficiente de " + produto.getNome() + ": " + produto.getDisponivel() + " unidades disponíveis");
+        }
+        return lancarRetirada(Movimento.Tipo.SAIDA, produto, quantidade, pedido);
+    }
+
+    // Saída de unidades já separadas por uma reserva confirmada
+    synchronized Movimento baixarReserva(Produto produto, int quantidade, long pedido) throws IOException {
+        return lancar(Movimento.Tipo.SAIDA, produto, -quantidade, -1, pedido);
+    }
+
+    // Método para ajustar o estoque a uma contagem física; grava a diferença
+    public synchronized Movimento ajustar(Produto produto, int contagem) throws IOException {
+        if (contagem < 0) {
+            throw new IllegalArgumentException("Contagem não pode ser negativa");
+        }
+        verificar(produto);
+        int diferenca = contagem - produto.getEstoque();
+        if (diferenca >= 0) {
+            return lancar(Movimento.Tipo.AJUSTE, produto, diferenca, -1, 0);
+        }
+        if (!produto.tomarDisponivel(-diferenca)) {
+            throw new IllegalArgumentException("A contagem de " + produto.getNome() + " fica abaixo das unidades reservadas");
+        }
+        return lancarRetirada(Movimento.Tipo.AJUSTE, produto, -diferenca, 0);
+    }
+
+    // Lança uma retirada cujas unidades já saíram do disponível; se o lançamento falhar, elas voltam
+    private Movimento lancarRetirada(Movimento.Tipo tipo, Produto produto, int quantidade, long pedido) throws IOException {
+        boolean lancado = false;
+        try {
+            Movimento movimento = lancar(tipo, produto, -quantidade, -1, pedido);
+            lancado = true;
+            return movimento;
+        } finally {
+            if (!lancado) {
+                produto.devolverDisponivel(quantidade);
+            }
+        }
+    }
+
+    // Método para consultar o estoque do produto num instante (em milissegundos).
+    // A partir do último movimento do produto anterior ao snapshot mais recente
+    // a resposta vem da memória em O(log n); antes disso o log é relido do
+    // início até o instante pedido.
+    public int estoqueEm(Produto produto, long instante) throws IOException {
+        int id = verificar(produto);
+        HistoricoSaldo historico;
+        long limite;
+        synchronized (this) {
+            historico = historicos.get(id);
+            if (historico.cobre(instante)) {
+                return historico.saldoEm(instante);
+            }
+            descarregar(false);
+            limite = posicaoLog;
+        }
+        int[] saldo = new int[1];
+        percorrerLog(0, limite, (tipo, buffer) -> {
+            if (tipo == REGISTRO_MOVIMENTO) {
+                buffer.get();
+                long quando = buffer.getLong();
+                int alvo = buffer.getInt();
+                int quantidade = buffer.getInt();
+                buffer.getInt();
+                buffer.getLong();
+                if (quando > instante) {
+                    return false;
+                }
+                if (alvo == id) {
+                    saldo[0] += quantidade;
+                }
+            }
+            return true;
+        });
+        return saldo[0];
+    }
+
+    // Método para percorrer todos os movimentos gravados, em ordem, para auditoria
+    public void auditar(Consumer<Movimento> consumidor) throws IOException {
+        long limite;
+        synchronized (this) {
+            descarregar(false);
+            limite = posicaoLog;
+        }
+        percorrerLog(0, limite, (tipo, buffer) -> {
+            if (tipo == REGISTRO_MOVIMENTO) {
+                Movimento.Tipo movimento = Movimento.Tipo.values()[buffer.get()];
+                long instante = buffer.getLong();
+                consumidor.accept(new Movimento(movimento, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong(), instante));
+            }
+            return true;
+        });
+    }
+
+    public synchronized List<Produto> getProdutos() {
+        return new ArrayList<>(produtos);
+    }
+
+    public synchronized Produto buscarProduto(String nome) {
+        for (Produto produto : produtos) {
+            if (produto.getNome().equals(nome)) {
+                return produto;
+            }
+        }
+        return null;
+    }
+
+    public synchronized Fornecedor getFornecedor(int id) {
+        return fornecedores.get(id);
+    }
+
+    // Método para gravar o log em disco (fsync)
+    public synchronized void sincronizar() throws IOException {
+        descarregar(true);
+    }
+
+    // Método para gravar o snapshot: estoque de cada produto e a posição do log já aplicada
+    public synchronized void salvarSnapshot() throws IOException {
+        descarregar(true);
+        Path temporario = diretorio.resolve(ARQUIVO_SNAPSHOT + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSAO);
+            out.writeLong(posicaoLog);
+            out.writeLong(ultimoInstante);
+            out.writeInt(fornecedores.size());
+            for (Fornecedor fornecedor : fornecedores) {
+                out.writeUTF(fornecedor.getNome());
+            }
+            out.writeInt(produtos.size());
+            for (Produto produto : produtos) {
+                out.writeUTF(produto.getNome());
+                out.writeDouble(produto.getPreco());
+                out.writeInt(produto.getEstoque());
+            }
+            out.flush();
+            // O snapshot só substitui o anterior depois de estar inteiro no disco
+            canal.force(true);
+        }
+        Files.move(temporario, diretorio.resolve(ARQUIVO_SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        posicaoSnapshot = posicaoLog;
+        desdeSnapshot = 0;
+        for (HistoricoSaldo historico : historicos) {
+            historico.podar();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            descarregar(true);
+        } finally {
+            log.close();
+        }
+    }
+
+    private Movimento lancar(Movimento.Tipo tipo, Produto produto, int quantidade, int fornecedor, long pedido) throws IOException {
+        return lancar(tipo, produto, produto.getEstoque(), quantidade, fornecedor, pedido);
+    }
+
+    private Movimento lancar(Movimento.Tipo tipo, Produto produto, int base, int quantidade, int fornecedor, long pedido) throws IOException {
+        int id = verificar(produto);
+        long saldo = (long) base + quantidade;
+        if (saldo < 0 || saldo > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Estoque inválido para " + produto.getNome() + ": " + saldo);
+        }
+        long instante = agora();
+        garantir(TAMANHO_MOVIMENTO);
+        pendentes.put(REGISTRO_MOVIMENTO).put((byte) tipo.ordinal()).putLong(instante)
+                .putInt(id).putInt(quantidade).putInt(fornecedor).putLong(pedido);
+        produto.definirEstoque((int) saldo);
+        historicos.get(id).registrar(instante, (int) saldo);
+        if (++desdeSnapshot >= intervaloSnapshot) {
+            salvarSnapshot();
+        }
+        return new Movimento(tipo, id, quantidade, fornecedor, pedido, instante);
+    }
+
+    private int verificar(Produto produto) {
+        if (produto.getRazao() != this) {
+            throw new IllegalArgumentException("O produto " + produto.getNome() + " não está cadastrado neste razão");
+        }
+        return produto.getId();
+    }
+
+    // Instantes nunca voltam, mesmo que o relógio volte, para a busca binária do histórico
+    private long agora() {
+        ultimoInstante = Math.max(ultimoInstante, relogio.millis());
+        return ultimoInstante;
+    }
+
+    private void incluirProduto(Produto produto) {
+        produto.vincular(this, produtos.size());
+        produtos.add(produto);
+        historicos.add(new HistoricoSaldo());
+    }
+
+    private void garantir(int bytes) throws IOException {
+        if (pendentes.remaining() < bytes) {
+            descarregar(false);
+            if (pendentes.remaining() < bytes) {
+                throw new IllegalArgumentException("Registro grande demais para o razão");
+            }
+        }
+    }
+
+    private void descarregar(boolean forcar) throws IOException {
+        pendentes.flip();
+        while (pendentes.hasRemaining()) {
+            posicaoLog += log.write(pendentes, posicaoLog);
+        }
+        pendentes.clear();
+        if (forcar) {
+            log.force(false);
+        }
+    }
+
+    private void recuperar() throws IOException {
+        Path snapshot = diretorio.resolve(ARQUIVO_SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Snapshot de estoque inválido");
+                }
+                int versao = in.readInt();
+                if (versao != VERSAO) {
+                    throw new IOException("Versão de snapshot de estoque não suportada: " + versao);
+                }
+                posicaoSnapshot = in.readLong();
+                ultimoInstante = in.readLong();
+                int totalFornecedores = in.readInt();
+                for (int i = 0; i < totalFornecedores; i++) {
+                    Fornecedor fornecedor = new Fornecedor(in.readUTF());
+                    idsFornecedores.put(fornecedor.getNome(), fornecedores.size());
+                    fornecedores.add(fornecedor);
+                }
+                int totalProdutos = in.readInt();
+                for (int i = 0; i < totalProdutos; i++) {
+                    Produto produto = new Produto(in.readUTF(), in.readDouble(), in.readInt());
+                    incluirProduto(produto);
+                    historicos.get(i).registrar(ultimoInstante, produto.getEstoque());
+                }
+            }
+        }
+        long fim = percorrerLog(posicaoSnapshot, Long.MAX_VALUE, (tipo, buffer) -> {
+            switch (tipo) {
+                case REGISTRO_PRODUTO: {
+                    buffer.getInt();
+                    double preco = buffer.getDouble();
+                    byte[] nome = new byte[buffer.getInt()];
+                    buffer.get(nome);
+                    incluirProduto(new Produto(new String(nome, StandardCharsets.UTF_8), preco, 0));
+                    historicos.get(produtos.size() - 1).registrar(ultimoInstante, 0);
+                    break;
+                }
+                case REGISTRO_FORNECEDOR: {
+                    buffer.getInt();
+                    byte[] nome = new byte[buffer.getInt()];
+                    buffer.get(nome);
+                    Fornecedor fornecedor = new Fornecedor(new String(nome, StandardCharsets.UTF_8));
+                    idsFornecedores.put(fornecedor.getNome(), fornecedores.size());
+                    fornecedores.add(fornecedor);
+                    break;
+                }
+                default: {
+                    buffer.get();
+                    long instante = buffer.getLong();
+                    Produto produto = produtos.get(buffer.getInt());
+                    int saldo = produto.getEstoque() + buffer.getInt();
+                    buffer.getInt();
+                    buffer.getLong();
+                    produto.definirEstoque(saldo);
+                    ultimoInstante = Math.max(ultimoInstante, instante);
+                    historicos.get(produto.getId()).registrar(instante, saldo);
+                    desdeSnapshot++;
+                }
+            }
+            return true;
+        });
+        posicaoLog = fim;
+        for (Produto produto : produtos) {
+            produto.reiniciarDisponivel();
+        }
+        // Um registro cortado no fim do log (queda durante a escrita) é descartado
+        log.truncate(fim);
+    }
+
+    private interface Visitante {
+        // Recebe o tipo e o buffer posicionado no corpo do registro; false interrompe a leitura
+        boolean visitar(byte tipo, ByteBuffer buffer);
+    }
+
+    // Lê registros inteiros de [inicio, limite) e retorna a posição logo após o último lido
+    private long percorrerLog(long inicio, long limite, Visitante visitante) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        buffer.limit(0);
+        long posicao = inicio;
+        long lidoAte = inicio;
+        while (true) {
+            int tamanho = tamanhoRegistro(buffer);
+            if (tamanho < 0 || tamanho > buffer.remaining()) {
+                buffer.compact();
+                int lidos = lidoAte < limite ? log.read(buffer, lidoAte) : -1;
+                if (lidos > 0) {
+                    lidoAte += lidos;
+                }
+                buffer.flip();
+                if (lidoAte > limite) {
+                    buffer.limit((int) (buffer.limit() - (lidoAte - limite)));
+                    lidoAte = limite;
+                }
+                if (lidos <= 0) {
+                    return posicao;
+                }
+                continue;
+            }
+            int fimRegistro = buffer.position() + tamanho;
+            if (!visitante.visitar(buffer.get(), buffer)) {
+                return posicao;
+            }
+            buffer.position(fimRegistro);
+            posicao += tamanho;
+        }
+    }
+
+    // Tamanho do registro que começa na posição atual, ou -1 se não deu para saber
+    private static int tamanhoRegistro(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int inicio = buffer.position();
+        int disponivel = buffer.remaining();
+        switch (buffer.get(inicio)) {
+            case REGISTRO_MOVIMENTO:
+                return TAMANHO_MOVIMENTO;
+            case REGISTRO_PRODUTO:
+                return disponivel < 17 ? -1 : 17 + buffer.getInt(inicio + 13);
+            case REGISTRO_FORNECEDOR:
+                return disponivel < 9 ? -1 : 9 + buffer.getInt(inicio + 5);
+            default:
+                return -1;
+        }
+    }
+}
+
+// Classe PedidoCompra: pedido consolidado para um fornecedor, com uma linha por produto
+class PedidoCompra {
+    private final long numero = Pedido.proximoNumero();
+    private final Fornecedor fornecedor;
+    private final Map<Produto, Integer> linhas = new LinkedHashMap<>();
+    private final List<Long> pedidosOrigem = new ArrayList<>();
+    private long somaCriacao;
+    private long maisAntigo = Long.MAX_VALUE;
+
+    PedidoCompra(Fornecedor fornecedor) {
+        this.fornecedor = fornecedor;
+    }
+
+    void incluir(Pedido pedido, long criadoEm) {
+        linhas.merge(pedido.getProduto(), pedido.getQuantidade(), Integer::sum);
+        pedidosOrigem.add(pedido.getNumero());
+        somaCriacao += criadoEm;
+        maisAntigo = Math.min(maisAntigo, criadoEm);
+    }
+
+    public long getNumero() {
+        return numero;
+    }
+
+    public Fornecedor getFornecedor() {
+        return fornecedor;
+    }
+
+    public Map<Produto, Integer> getLinhas() {
+        return Collections.unmodifiableMap(linhas);
+    }
+
+    // Números dos pedidos individuais que foram consolidados aqui
+    public List<Long> getPedidosOrigem() {
+        return Collections.unmodifiableList(pedidosOrigem);
+    }
+
+    // Método para dar entrada de todas as linhas; no razão, tudo entra de uma vez sob uma única trava
+    public void receber() throws IOException {
+        RazaoEstoque razao = null;
+        boolean mesmoRazao = true;
+        for (Produto produto : linhas.keySet()) {
+            if (razao == null) {
+                razao = produto.getRazao();
+            }
+            mesmoRazao &= produto.getRazao() == razao;
+        }
+        if (razao != null && mesmoRazao) {
+            razao.receber(this);
+            return;
+        }
+        for (Map.Entry<Produto, Integer> linha : linhas.entrySet()) {
+            Produto produto = linha.getKey();
+            if (produto.getRazao() != null) {
+                produto.getRazao().entrada(produto, linha.getValue(), fornecedor, numero);
+            } else {
+                produto.adicionarEstoque(linha.getValue());
+            }
+        }
+    }
+
+    int getTotalOrigem() {
+        return pedidosOrigem.size();
+    }
+
+    long getSomaCriacao() {
+        return somaCriacao;
+    }
+
+    long getMaisAntigo() {
+        return maisAntigo;
+    }
+}
+
+// Classe MetricasEtapa: vazão e latência de uma etapa do pipeline de reposição.
+// A latência de cada pedido é medida desde que ele entrou no pipeline.
+class MetricasEtapa {
+    private final String nome;
+    private final long inicio = System.nanoTime();
+    private final LongAdder itens = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder latenciaTotal = new LongAdder();
+    private final AtomicLong latenciaMaxima = new AtomicLong();
+
+    MetricasEtapa(String nome) {
+        this.nome = nome;
+    }
+
+    void registrar(int quantidade, long latenciaTotalNanos, long latenciaMaximaNanos) {
+        itens.add(quantidade);
+        lotes.increment();
+        latenciaTotal.add(latenciaTotalNanos);
+        latenciaMaxima.accumulateAndGet(latenciaMaximaNanos, Math::max);
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public long getItens() {
+        return itens.sum();
+    }
+
+    public long getLotes() {
+        return lotes.sum();
+    }
+
+    public double getItensPorSegundo() {
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        return segundos > 0 ? itens.sum() / segundos : 0;
+    }
+
+    public double getLatenciaMediaMillis() {
+        long quantidade = itens.sum();
+        return quantidade == 0 ? 0 : latenciaTotal.sum() / 1e6 / quantidade;
+    }
+
+    public double getLatenciaMaximaMillis() {
+        return latenciaMaxima.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d pedidos em %d lotes, %.0f pedidos/s, latência média %.2f ms, máxima %.2f ms",
+                nome, getItens(), getLotes(), getItensPorSegundo(), getLatenciaMediaMillis(), getLatenciaMaximaMillis());
+    }
+}
+
+// Classe PipelineReposicao: junta pedidos de reposição numa janela de tempo ou
+// de tamanho, consolida por fornecedor em pedidos de compra com várias linhas e
+// dá entrada do estoque em lote. São três etapas ligadas por filas limitadas:
+// coleta (solicitar), consolidação e recebimento, cada uma com sua thread e suas
+// métricas. Quando a fila de coleta enche, solicitar() espera. solicitar() e
+// close() se excluem por uma trava de leitura e escrita: todo pedido aceito entra
+// na fila antes do marcador de fim, que é enfileirado uma única vez.
+class PipelineReposicao implements Closeable {
+    private static final Object FIM = new Object();
+
+    private static final class Entrada {
+        final Pedido pedido;
+        final long criadoEm;
+
+        Entrada(Pedido pedido, long criadoEm) {
+            this.pedido = pedido;
+            this.criadoEm = criadoEm;
+        }
+    }
+
+    private final BlockingQueue<Object> coleta;
+    private final BlockingQueue<Object> recebimento;
+    private final int tamanhoJanela;
+    private final long janelaNanos;
+    private final Consumer<PedidoCompra> aoReceber;
+    private final MetricasEtapa metricasColeta = new MetricasEtapa("Coleta");
+    private final MetricasEtapa metricasConsolidacao = new MetricasEtapa("Consolidação");
+    private final MetricasEtapa metricasRecebimento = new MetricasEtapa("Recebimento");
+    private final Thread consolidador;
+    private final Thread recebedor;
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong falhasAoReceber = new AtomicLong();
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private volatile boolean fechado;
+
+    // Método para montar o pipeline: a janela fecha com tamanhoJanela pedidos ou depois de janela, o que vier primeiro
+    public PipelineReposicao(int capacidade, int tamanhoJanela, Duration janela, Consumer<PedidoCompra> aoReceber) {
+        if (capacidade <= 0 || tamanhoJanela <= 0 || janela.isNegative() || janela.isZero()) {
+            throw new IllegalArgumentException("Capacidade, tamanho e duração da janela devem ser positivos");
+        }
+        this.coleta = new ArrayBlockingQueue<>(capacidade);
+        this.recebimento = new ArrayBlockingQueue<>(capacidade);
+        this.tamanhoJanela = tamanhoJanela;
+        this.janelaNanos = janela.toNanos();
+        this.aoReceber = aoReceber != null ? aoReceber : pedido -> { };
+        this.consolidador = new Thread(this::consolidar, "estoque-consolidacao");
+        this.recebedor = new Thread(this::receber, "estoque-recebimento");
+        consolidador.setDaemon(true);
+        recebedor.setDaemon(true);
+        consolidador.start();
+        recebedor.start();
+    }
+
+    // Método para entregar um pedido de reposição ao pipeline
+    public void solicitar(Pedido pedido) throws InterruptedException {
+        trava.readLock().lockInterruptibly();
+        try {
+            if (fechado) {
+                throw new IllegalStateException("O pipeline de reposição foi encerrado");
+            }
+            coleta.put(new Entrada(pedido, System.nanoTime()));
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public MetricasEtapa getMetricasColeta() {
+        return metricasColeta;
+    }
+
+    public MetricasEtapa getMetricasConsolidacao() {
+        return metricasConsolidacao;
+    }
+
+    public MetricasEtapa getMetricasRecebimento() {
+        return metricasRecebimento;
+    }
+
+    // Pedidos de compra cuja entrada falhou (erro de E/S no razão, por exemplo)
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    // Pedidos recebidos cujo aviso (aoReceber) lançou exceção
+    public long getFalhasAoReceber() {
+        return falhasAoReceber.get();
+    }
+
+    // Fecha a janela aberta, espera o recebimento de tudo o que já foi solicitado e encerra as threads
+    @Override
+    public void close() {
+        trava.writeLock().lock();
+        try {
+            if (fechado) {
+                return;
+            }
+            fechado = true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+        try {
+            coleta.put(FIM);
+            consolidador.join();
+            recebedor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consolidar() {
+        Map<String, PedidoCompra> janela = new LinkedHashMap<>();
+        int pedidos = 0;
+        long abertura = 0;
+        long latenciaFila = 0;
+        long maiorFila = 0;
+        try {
+            while (true) {
+                Object item;
+                if (pedidos == 0) {
+                    item = coleta.take();
+                } else {
+                    long restante = abertura + janelaNanos - System.nanoTime();
+                    item = restante > 0 ? coleta.poll(restante, TimeUnit.NANOSECONDS) : null;
+                }
+                if (item instanceof Entrada) {
+                    Entrada entrada = (Entrada) item;
+                    long espera = System.nanoTime() - entrada.criadoEm;
+                    latenciaFila += espera;
+                    maiorFila = Math.max(maiorFila, espera);
+                    if (pedidos == 0) {
+                        abertura = System.nanoTime();
+                    }
+                    Fornecedor fornecedor = entrada.pedido.getFornecedor();
+                    janela.computeIfAbsent(fornecedor.getNome(), n -> new PedidoCompra(fornecedor))
+                            .incluir(entrada.pedido, entrada.criadoEm);
+                    pedidos++;
+                }
+                if (item == null || item == FIM || pedidos >= tamanhoJanela) {
+                    if (pedidos > 0) {
+                        metricasColeta.registrar(pedidos, latenciaFila, maiorFila);
+                        emitir(janela);
+                        janela = new LinkedHashMap<>();
+                        pedidos = 0;
+                        latenciaFila = 0;
+                        maiorFila = 0;
+                    }
+                    if (item == FIM) {
+                        recebimento.put(FIM);
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void emitir(Map<String, PedidoCompra> janela) throws InterruptedException {
+        long agora = System.nanoTime();
+        for (PedidoCompra compra : janela.values()) {
+            metricasConsolidacao.registrar(compra.getTotalOrigem(),
+                    agora * compra.getTotalOrigem() - compra.getSomaCriacao(), agora - compra.getMaisAntigo());
+            recebimento.put(compra);
+        }
+    }
+
+    private void receber() {
+        try {
+            while (true) {
+                Object item = recebimento.take();
+                if (item == FIM) {
+                    return;
+                }
+                PedidoCompra compra = (PedidoCompra) item;
+                try {
+                    compra.receber();
+                } catch (IOException | RuntimeException e) {
+                    falhas.incrementAndGet();
+                    System.out.println("Falha ao receber o pedido de compra " + compra.getNumero() + ": " + e.getMessage());
+                    continue;
+                }
+                long agora = System.nanoTime();
+                metricasRecebimento.registrar(compra.getTotalOrigem(),
+                        agora * compra.getTotalOrigem() - compra.getSomaCriacao(), agora - compra.getMaisAntigo());
+                // Um aviso com defeito não pode parar o recebimento nem travar o close()
+                try {
+                    aoReceber.accept(compra);
+                } catch (RuntimeException e) {
+                    falhasAoReceber.incrementAndGet();
+                    System.out.println("Falha ao avisar o recebimento do pedido de compra " + compra.getNumero() + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Interface AlertaEstoque: avisada quando um produto chega ao ponto de pedido
+interface AlertaEstoque {
+    void pontoPedidoAtingido(Produto produto, int estoque);
+}
+
+// Classe MonitorEstoque: índice dos produtos ordenado pelo nível de estoque.
+// Cada mudança de estoque reposiciona o produto num skip list em O(log n), então
+// "abaixo de L" sai em O(log n + resultado) sem varrer o catálogo. Quando o
+// estoque cruza o ponto de pedido para baixo, os assinantes são avisados na
+// própria thread que mudou o estoque, sem precisar de consultas periódicas.
+class MonitorEstoque {
+
+    private static final class Entrada {
+        final Produto produto;
+        final int estoque;
+        final long ordem;
+
+        Entrada(Produto produto, int estoque, long ordem) {
+            this.produto = produto;
+            this.estoque = estoque;
+            this.ordem = ordem;
+        }
+    }
+
+    private static final Comparator<Entrada> ORDEM = Comparator
+            .comparingInt((Entrada e) -> e.estoque)
+            .thenComparingLong(e -> e.ordem);
+
+    private final ConcurrentSkipListSet<Entrada> ordem = new ConcurrentSkipListSet<>(ORDEM);
+    private final ConcurrentMap<Produto, Entrada> atual = new ConcurrentHashMap<>();
+    private final AtomicLong sequencia = new AtomicLong();
+    private final List<AlertaEstoque> assinantes = new CopyOnWriteArrayList<>();
+
+    // Método para passar a acompanhar o estoque de um produto
+    public void acompanhar(Produto produto) {
+        synchronized (produto) {
+            produto.vincular(this);
+            atual.computeIfAbsent(produto, p -> {
+                Entrada entrada = new Entrada(p, p.getEstoque(), sequencia.getAndIncrement());
+                ordem.add(entrada);
+                return entrada;
+            });
+        }
+    }
+
+    public void assinar(AlertaEstoque alerta) {
+        assinantes.add(alerta);
+    }
+
+    public void cancelarAssinatura(AlertaEstoque alerta) {
+        assinantes.remove(alerta);
+    }
+
+    // Método para listar os produtos com estoque abaixo do limite, do menor estoque para o maior
+    public List<Produto> abaixoDe(int limite) {
+        List<Produto> resultado = new ArrayList<>();
+        for (Entrada entrada : ordem.headSet(new Entrada(null, limite, Long.MIN_VALUE))) {
+            resultado.add(entrada.produto);
+        }
+        return resultado;
+    }
+
+    public int getTotalProdutos() {
+        return atual.size();
+    }
+
+    void atualizar(Produto produto, int anterior, int novo) {
+        // compute, e não computeIfPresent: uma mudança que chega durante o
+        // acompanhar() ainda precisa deixar o produto no índice com o valor novo
+        atual.compute(produto, (p, antiga) -> {
+            long posicao;
+            if (antiga != null) {
+                ordem.remove(antiga);
+                posicao = antiga.ordem;
+            } else {
+                posicao = sequencia.getAndIncrement();
+            }
+            Entrada nova = new Entrada(p, novo, posicao);
+            ordem.add(nova);
+            return nova;
+        });
+        int ponto = produto.getPontoPedido();
+        if (ponto >= 0 && anterior > ponto && novo <= ponto) {
+            for (AlertaEstoque alerta : assinantes) {
+                alerta.pontoPedidoAtingido(produto, novo);
+            }
+        }
     }
 }
 
@@ -71,6 +1455,14 @@ public class Estoque {
         }
     }
 
+    // Método para listar produtos com estoque baixo a partir do índice do monitor, sem varrer o catálogo
+    public static void listarProdutosEstoqueBaixo(MonitorEstoque monitor, int limite) {
+        System.out.println("Produtos com estoque baixo:");
+        for (Produto produto : monitor.abaixoDe(limite)) {
+            System.out.println(produto.getNome() + ": " + produto.getEstoque() + " unidades");
+        }
+    }
+
     public static void main(String[] args) {
         // Criando produtos
         Produto produto1 = new Produto("Produto A", 50.0, 10);
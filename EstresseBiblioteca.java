@@ -0,0 +1,245 @@
+package biblioteca;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de estresse da circulação: várias threads emprestam, devolvem e
+ * reservam os mesmos livros ao mesmo tempo, com o diário ativo, enquanto uma
+ * thread de vigia confere que nenhum livro passa de 0..exemplares. No fim
+ * confere os invariantes do acervo e recarrega snapshot + diário para ver se
+ * a reprodução chega ao mesmo estado. Antes disso, confere um diário com lote
+ * pequeno que mistura cadastros e registros de tamanho fixo. Grava
+ * biblioteca.dat e biblioteca.wal no diretório atual.
+ *
+ * Uso: java biblioteca.EstresseBiblioteca [threads] [operacoesPorThread]
+ */
+public class EstresseBiblioteca {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operacoes = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        conferirLoteComCadastros();
+        conferirUsuarioSemCadastro();
+        conferirNotificacoesEncerradas();
+
+        Biblioteca biblioteca = new Biblioteca();
+        Autor autor = new Autor("Autor de Teste");
+        for (int i = 0; i < 10; i++) {
+            biblioteca.adicionarLivro(new Livro("Livro " + i, autor, 1 + i % 3));
+        }
+        for (int i = 0; i < 20; i++) {
+            biblioteca.adicionarUsuario(new Usuario("Usuário " + i));
+        }
+        biblioteca.ativarDiario(DiarioBiblioteca.Durabilidade.LOTE);
+        // Cadastros com o diário ativo vão para o diário, não para o snapshot.
+        for (int i = 10; i < 20; i++) {
+            biblioteca.adicionarLivro(new Livro("Livro " + i, autor, 1 + i % 3));
+        }
+        for (int i = 20; i < 40; i++) {
+            biblioteca.adicionarUsuario(new Usuario("Usuário " + i));
+        }
+        List<Livro> livros = new ArrayList<>(biblioteca.getLivros());
+        List<Usuario> usuarios = new ArrayList<>(biblioteca.getUsuarios());
+
+        PrintStream saida = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        AtomicBoolean rodando = new AtomicBoolean(true);
+        List<String> falhas = new ArrayList<>();
+        Thread vigia = new Thread(() -> {
+            while (rodando.get()) {
+                for (Livro livro : livros) {
+                    int emprestados = livro.getEmprestados();
+                    if (emprestados < 0 || emprestados > livro.getExemplares()) {
+                        synchronized (falhas) {
+                            falhas.add(livro.getTitulo() + " com " + emprestados + " emprestados");
+                        }
+                    }
+                }
+            }
+        }, "vigia");
+        vigia.start();
+
+        AtomicLong devolucoes = new AtomicLong();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> trabalhadores = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long semente = t;
+            Thread trabalhador = new Thread(() -> {
+                Random aleatorio = new Random(semente);
+                try {
+                    largada.await();
+                    for (int i = 0; i < operacoes; i++) {
+                        Usuario usuario = usuarios.get(aleatorio.nextInt(usuarios.size()));
+                        Livro livro = livros.get(aleatorio.nextInt(livros.size()));
+                        if (aleatorio.nextBoolean()) {
+                            usuario.emprestarLivro(livro, biblioteca);
+                        } else {
+                            try {
+                                usuario.devolverLivro(livro, biblioteca);
+                                devolucoes.incrementAndGet();
+                            } catch (LivroNaoEmprestadoException e) {
+                                // Outra thread devolveu primeiro: esperado.
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    synchronized (falhas) {
+                        falhas.add(Thread.currentThread().getName() + ": " + e);
+                    }
+                }
+            }, "circulacao-" + t);
+            trabalhadores.add(trabalhador);
+            trabalhador.start();
+        }
+        largada.countDown();
+        for (Thread trabalhador : trabalhadores) {
+            trabalhador.join();
+        }
+        long nanos = System.nanoTime() - inicio;
+        rodando.set(false);
+        vigia.join();
+        biblioteca.encerrarNotificacoes();
+        biblioteca.encerrarDiario();
+        System.setOut(saida);
+
+        Map<Livro, Integer> abertos = new HashMap<>();
+        int totalAbertos = 0;
+        for (Emprestimo emprestimo : biblioteca.getEmprestimos()) {
+            abertos.merge(emprestimo.getLivro(), 1, Integer::sum);
+            totalAbertos++;
+        }
+        if (totalAbertos != biblioteca.getEmprestimos().tamanho()) {
+            falhas.add("registro com " + totalAbertos + " empréstimos e tamanho " + biblioteca.getEmprestimos().tamanho());
+        }
+        for (Livro livro : livros) {
+            int esperado = abertos.getOrDefault(livro, 0);
+            if (livro.getEmprestados() != esperado) {
+                falhas.add(livro.getTitulo() + ": " + livro.getEmprestados() + " emprestados e " + esperado + " empréstimos abertos");
+            }
+            List<Usuario> reservas = livro.getReservas();
+            if (new HashSet<>(reservas).size() != reservas.size()) {
+                falhas.add(livro.getTitulo() + ": usuário repetido na fila de reservas");
+            }
+        }
+
+        Biblioteca recarregada = new Biblioteca();
+        recarregada.carregarDados();
+        if (recarregada.getLivros().size() != livros.size() || recarregada.getUsuarios().size() != usuarios.size()) {
+            falhas.add("recarga com " + recarregada.getLivros().size() + " livros e " + recarregada.getUsuarios().size() + " usuários");
+        } else {
+            for (int i = 0; i < livros.size(); i++) {
+                Livro original = livros.get(i);
+                Livro lido = recarregada.getLivros().get(i);
+                if (!original.getTitulo().equals(lido.getTitulo()) || original.getEmprestados() != lido.getEmprestados()
+                        || original.getTotalReservas() != lido.getTotalReservas()) {
+                    falhas.add("recarga diverge em " + original.getTitulo());
+                }
+            }
+            for (int i = 0; i < usuarios.size(); i++) {
+                if (usuarios.get(i).getMultaAcumulada() != recarregada.getUsuarios().get(i).getMultaAcumulada()) {
+                    falhas.add("recarga diverge na multa de " + usuarios.get(i).getNome());
+                }
+            }
+            if (recarregada.getEmprestimos().tamanho() != totalAbertos) {
+                falhas.add("recarga com " + recarregada.getEmprestimos().tamanho() + " empréstimos abertos");
+            }
+        }
+        recarregada.encerrarNotificacoes();
+
+        System.out.printf("%d threads x %d operações em %d ms: %d devoluções, %d empréstimos abertos%n",
+                threads, operacoes, TimeUnit.NANOSECONDS.toMillis(nanos), devolucoes.get(), totalAbertos);
+        if (!falhas.isEmpty()) {
+            falhas.stream().limit(20).forEach(System.out::println);
+            throw new IllegalStateException(falhas.size() + " invariantes violados");
+        }
+        System.out.println("Invariantes conferidos: OK");
+    }
+
+    private static void conferirUsuarioSemCadastro() throws Exception {
+        Biblioteca biblioteca = new Biblioteca();
+        Livro livro = new Livro("Livro Avulso", new Autor("Autor Avulso"), 1);
+        biblioteca.adicionarLivro(livro);
+        boolean recusado = false;
+        try {
+            new Usuario("Sem Cadastro").emprestarLivro(livro, biblioteca);
+        } catch (IllegalStateException e) {
+            recusado = true;
+        }
+        biblioteca.encerrarNotificacoes();
+        if (!recusado || !livro.isDisponivel() || livro.getEmprestados() != 0) {
+            throw new IllegalStateException("Empréstimo para usuário sem cadastro prendeu o exemplar");
+        }
+    }
+
+    // Avisos depois do encerramento são descartados, sem recriar o barramento.
+    private static void conferirNotificacoesEncerradas() throws Exception {
+        PrintStream saida = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (boolean criado : new boolean[]{true, false}) {
+                Biblioteca biblioteca = new Biblioteca();
+                Livro livro = new Livro("Livro Disputado", new Autor("Autor Disputado"), 1);
+                biblioteca.adicionarLivro(livro);
+                Usuario primeiro = new Usuario("Primeiro");
+                Usuario segundo = new Usuario("Segundo");
+                biblioteca.adicionarUsuario(primeiro);
+                biblioteca.adicionarUsuario(segundo);
+                primeiro.emprestarLivro(livro, biblioteca);
+                BarramentoNotificacoes barramento = criado ? biblioteca.getNotificacoes() : null;
+                biblioteca.encerrarNotificacoes();
+                // A reserva e a devolução geram avisos depois do encerramento.
+                segundo.emprestarLivro(livro, biblioteca);
+                primeiro.devolverLivro(livro, biblioteca);
+                if (criado) {
+                    if (biblioteca.getNotificacoes() != barramento || barramento.getMetricas().getDescartadas() != 2) {
+                        throw new IllegalStateException("Barramento encerrado foi trocado ou entregou avisos");
+                    }
+                } else {
+                    try {
+                        biblioteca.getNotificacoes();
+                        throw new IllegalArgumentException("Barramento criado depois do encerramento");
+                    } catch (IllegalStateException esperado) {
+                        // Encerrado sem nunca ter sido criado.
+                    }
+                }
+            }
+        } finally {
+            System.setOut(saida);
+        }
+    }
+
+    // Um cadastro com nome longo deixa o lote com menos de um registro livre;
+    // o empréstimo seguinte precisa descarregá-lo em vez de estourar o buffer.
+    private static void conferirLoteComCadastros() throws Exception {
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.ativarDiario(DiarioBiblioteca.Durabilidade.ASSINCRONA, 4, 5);
+        Usuario usuario = new Usuario("Usuária Com Um Nome Bem Comprido Xy");
+        biblioteca.adicionarUsuario(usuario);
+        Livro livro = new Livro("Livro do Lote", new Autor("Autor do Lote 2"), 1);
+        biblioteca.adicionarLivro(livro);
+        usuario.emprestarLivro(livro, biblioteca);
+        biblioteca.encerrarDiario();
+        biblioteca.encerrarNotificacoes();
+
+        Biblioteca recarregada = new Biblioteca();
+        recarregada.carregarDados();
+        recarregada.encerrarNotificacoes();
+        if (recarregada.getUsuarios().size() != 1 || !recarregada.getUsuarios().get(0).getNome().equals(usuario.getNome())
+                || recarregada.getLivros().size() != 1 || recarregada.getEmprestimos().tamanho() != 1) {
+            throw new IllegalStateException("Diário com lote pequeno não reproduz cadastros e empréstimo");
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package reservas;
+
+import reservas.SistemaReservas.Bloqueio;
+import reservas.SistemaReservas.MapaAssentos;
+import reservas.SistemaReservas.Passageiro;
+import reservas.SistemaReservas.Reserva;
+import reservas.SistemaReservas.Voo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Teste de estresse dos bloqueios de assento: várias threads bloqueiam,
+ * confirmam, liberam ou abandonam bloqueios com prazos curtos, reservam e
+ * cancelam no mesmo voo, enquanto uma thread de vigia confere que as vendas
+ * nunca passam do limite. Depois que todos os prazos vencem, confere que
+ * nenhum assento ficou com dois donos, que bloqueios vencidos não aparecem
+ * como ocupados nem antes nem depois de recuperados e que as vagas de venda
+ * tomadas pelos bloqueios voltaram: sem overbooking, ninguém fica sem assento.
+ *
+ * Uso: java reservas.EstresseReservas [threads] [operacoesPorThread]
+ */
+public class EstresseReservas {
+
+    private static final int CAPACIDADE = 300;
+    private static final long PRAZO_MAXIMO_MICROS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operacoes = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        conferirBloqueioVencido();
+        conferirCadastroConcorrente();
+
+        Voo voo = new Voo("E1", CAPACIDADE);
+        MapaAssentos mapa = voo.getAssentos();
+        List<Passageiro> passageiros = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            passageiros.add(new Passageiro("Passageiro " + i));
+        }
+        ConcurrentLinkedQueue<Reserva> ativas = new ConcurrentLinkedQueue<>();
+        List<String> falhas = new ArrayList<>();
+
+        AtomicBoolean rodando = new AtomicBoolean(true);
+        Thread vigia = new Thread(() -> {
+            while (rodando.get()) {
+                // O contador de ocupados acompanha os bits com atraso; ele só é
+                // conferido no fim, com as threads paradas.
+                int vendidas = voo.getVendidas();
+                if (vendidas < 0 || vendidas > voo.getLimiteVendas()) {
+                    synchronized (falhas) {
+                        falhas.add("voo com " + vendidas + " vendidas");
+                    }
+                }
+            }
+        }, "vigia");
+        vigia.start();
+
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> trabalhadores = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long semente = t;
+            Thread trabalhador = new Thread(() -> {
+                Random aleatorio = new Random(semente);
+                try {
+                    largada.await();
+                    for (int i = 0; i < operacoes; i++) {
+                        Passageiro passageiro = passageiros.get(aleatorio.nextInt(passageiros.size()));
+                        int operacao = aleatorio.nextInt(10);
+                        if (operacao < 4) {
+                            Duration validade = Duration.ofNanos(
+                                    TimeUnit.MICROSECONDS.toNanos(aleatorio.nextInt((int) PRAZO_MAXIMO_MICROS)));
+                            Bloqueio bloqueio = aleatorio.nextBoolean()
+                                    ? voo.bloquear(validade)
+                                    : voo.bloquear(1 + aleatorio.nextInt(CAPACIDADE), validade);
+                            if (bloqueio != null) {
+                                int destino = aleatorio.nextInt(3);
+                                if (destino == 0) {
+                                    Reserva reserva = voo.confirmar(bloqueio, passageiro);
+                                    if (reserva != null) {
+                                        ativas.add(reserva);
+                                    }
+                                } else if (destino == 1) {
+                                    voo.liberar(bloqueio);
+                                }
+                                // Senão o bloqueio é abandonado e vence sozinho.
+                            }
+                        } else if (operacao < 7) {
+                            Reserva reserva = voo.reservar(passageiro);
+                            if (reserva != null) {
+                                ativas.add(reserva);
+                            }
+                        } else if (operacao < 9) {
+                            Reserva reserva = ativas.poll();
+                            if (reserva != null) {
+                                voo.cancelar(reserva);
+                            }
+                        } else {
+                            mapa.recuperarExpirados();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "trabalhador-" + t);
+            trabalhadores.add(trabalhador);
+            trabalhador.start();
+        }
+        largada.countDown();
+        for (Thread trabalhador : trabalhadores) {
+            trabalhador.join();
+        }
+        long duracao = System.nanoTime() - inicio;
+        rodando.set(false);
+        vigia.join();
+
+        // Espera todos os bloqueios abandonados vencerem.
+        Thread.sleep(TimeUnit.MICROSECONDS.toMillis(PRAZO_MAXIMO_MICROS) + 5);
+        Set<Integer> donos = conferirAtivas(ativas, mapa, falhas);
+        conferirMapa(mapa, donos, falhas);
+        int recuperados = mapa.recuperarExpirados();
+        conferirMapa(mapa, donos, falhas);
+        if (mapa.getOcupados() != donos.size()) {
+            falhas.add("após recuperar, " + mapa.getOcupados() + " ocupados para " + donos.size() + " reservas com assento");
+        }
+        if (voo.getVendidas() != donos.size()) {
+            falhas.add("após recuperar, " + voo.getVendidas() + " vendidas para " + donos.size() + " reservas ativas");
+        }
+
+        if (!falhas.isEmpty()) {
+            throw new IllegalStateException(falhas.size() + " falhas; primeira: " + falhas.get(0));
+        }
+        System.out.println(threads + " threads x " + operacoes + " operações em "
+                + TimeUnit.NANOSECONDS.toMillis(duracao) + " ms: " + donos.size() + " reservas ativas, "
+                + recuperados + " bloqueios vencidos recuperados no fim");
+        System.out.println("Invariantes conferidos: OK");
+    }
+
+    private static void conferirBloqueioVencido() {
+        Voo voo = new Voo("E0", 2);
+        Bloqueio vencido = voo.bloquear(1, Duration.ZERO);
+        if (vencido == null || voo.getAssentos().isOcupado(1)) {
+            throw new IllegalStateException("Bloqueio vencido aparece como ocupado");
+        }
+        if (voo.confirmar(vencido, new Passageiro("Atrasado")) != null) {
+            throw new IllegalStateException("Bloqueio vencido foi confirmado");
+        }
+        Bloqueio valido = voo.bloquear(2, Duration.ofMinutes(5));
+        if (valido == null || !voo.getAssentos().isOcupado(2) || voo.bloquear(2, Duration.ofMinutes(5)) != null) {
+            throw new IllegalStateException("Bloqueio válido não protege o assento");
+        }
+        // Com os dois assentos bloqueados não há vaga: a reserva não pode sair com assento 0.
+        Bloqueio outro = voo.bloquear(1, Duration.ofMinutes(5));
+        if (outro == null || voo.reservar(new Passageiro("Sem vaga")) != null) {
+            throw new IllegalStateException("Bloqueios não ocupam vaga de venda");
+        }
+        voo.liberar(outro);
+        Reserva reserva = voo.reservar(new Passageiro("Com vaga"));
+        if (reserva == null || reserva.getAssento() != 1 || voo.getVendidas() != 2) {
+            throw new IllegalStateException("Bloqueio liberado não devolveu a vaga");
+        }
+    }
+
+    // Reservas feitas enquanto o voo é cadastrado: ou o cadastro é recusado,
+    // ou todas elas aparecem no manifesto.
+    private static void conferirCadastroConcorrente() throws InterruptedException {
+        for (int rodada = 0; rodada < 2000; rodada++) {
+            SistemaReservas sistema = new SistemaReservas();
+            Voo voo = new Voo("C" + rodada, 8);
+            List<Reserva> feitas = new ArrayList<>();
+            Thread vendedor = new Thread(() -> {
+                for (int i = 0; i < 8; i++) {
+                    Reserva reserva = voo.reservar(new Passageiro("Passageiro " + i));
+                    if (reserva != null) {
+                        feitas.add(reserva);
+                    }
+                }
+            });
+            vendedor.start();
+            boolean cadastrado;
+            try {
+                sistema.cadastrarVoo(voo);
+                cadastrado = true;
+            } catch (IllegalArgumentException e) {
+                cadastrado = false;
+            }
+            vendedor.join();
+            if (cadastrado && sistema.idsPassageiros(voo.getNumero()).length != feitas.size()) {
+                throw new IllegalStateException("Voo cadastrado com " + feitas.size() + " reservas e "
+                        + sistema.idsPassageiros(voo.getNumero()).length + " no manifesto");
+            }
+        }
+    }
+
+    private static Set<Integer> conferirAtivas(Iterable<Reserva> ativas, MapaAssentos mapa, List<String> falhas) {
+        Set<Integer> donos = new HashSet<>();
+        for (Reserva reserva : ativas) {
+            if (reserva.getSituacao() != Reserva.Situacao.ATIVA) {
+                continue;
+            }
+            if (reserva.getAssento() == 0) {
+                falhas.add("reserva sem assento num voo sem overbooking");
+                continue;
+            }
+            if (!donos.add(reserva.getAssento())) {
+                falhas.add("assento " + reserva.getAssento() + " com duas reservas ativas");
+            }
+            if (!mapa.isOcupado(reserva.getAssento())) {
+                falhas.add("assento " + reserva.getAssento() + " reservado mas livre no mapa");
+            }
+        }
+        return donos;
+    }
+
+    private static void conferirMapa(MapaAssentos mapa, Set<Integer> donos, List<String> falhas) {
+        for (int assento = 1; assento <= mapa.getCapacidade(); assento++) {
+            if (mapa.isOcupado(assento) != donos.contains(assento)) {
+                falhas.add("assento " + assento + (donos.contains(assento)
+                        ? " reservado mas livre no mapa" : " ocupado sem reserva ativa"));
+            }
+        }
+    }
+}
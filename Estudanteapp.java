@@ -1,14 +1,35 @@
 package estudante;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
 
 // Classe Disciplina
 class Disciplina {
     private String nome;
     private List<Estudante> estudantes;
+    private final Set<Estudante> matriculados = new HashSet<>();
+    private final MediaAcumulada media = new MediaAcumulada();
+    private QuadroNotas quadro;
+    private int id = -1;
 
     public Disciplina(String nome) {
         if (nome == null || nome.trim().isEmpty()) {
@@ -26,14 +47,46 @@ class Disciplina {
         if (estudante == null) {
             throw new IllegalArgumentException("Estudante não pode ser nulo.");
         }
-        if (!estudantes.contains(estudante)) {
+        if (matriculados.add(estudante)) {
             estudantes.add(estudante);
             estudante.matricularDisciplina(this);
         }
     }
 
     public List<Estudante> getEstudantes() {
-        return estudantes;
+        return Collections.unmodifiableList(estudantes);
+    }
+
+    // Consulta em O(1) se o estudante foi matriculado por esta disciplina
+    boolean temMatriculado(Estudante estudante) {
+        return matriculados.contains(estudante);
+    }
+
+    // Média da turma, mantida a cada matrícula e a cada nota atribuída
+    public double calcularMedia() {
+        return media.getMedia();
+    }
+
+    // Quantidade de matrículas que entram na média
+    public int getTotalNotas() {
+        return media.getTotal();
+    }
+
+    MediaAcumulada getMediaAcumulada() {
+        return media;
+    }
+
+    public QuadroNotas getQuadro() {
+        return quadro;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    void vincular(QuadroNotas quadro, int id) {
+        this.quadro = quadro;
+        this.id = id;
     }
 }
 
@@ -41,6 +94,10 @@ class Disciplina {
 class Estudante {
     private String nome;
     private Map<Disciplina, Double> notas;
+    private final MediaAcumulada media = new MediaAcumulada();
+    private QuadroNotas quadro;
+    private int id = -1;
+    private RankingEstudantes ranking;
 
     public Estudante(String nome) {
         if (nome == null || nome.trim().isEmpty()) {
@@ -58,26 +115,82 @@ class Estudante {
         if (disciplina == null) {
             throw new IllegalArgumentException("Disciplina não pode ser nula.");
         }
-        notas.putIfAbsent(disciplina, 0.0); // Matricula na disciplina com nota inicial 0
+        boolean nova;
+        if (quadro != null) {
+            nova = quadro.matricular(this, disciplina);
+        } else {
+            nova = notas.putIfAbsent(disciplina, 0.0) == null; // Matricula na disciplina com nota inicial 0
+        }
+        if (nova) {
+            media.adicionar(0.0);
+            disciplina.getMediaAcumulada().adicionar(0.0);
+            if (ranking != null) {
+                ranking.registrar(this, disciplina);
+            }
+        }
     }
 
     public void atribuirNota(Disciplina disciplina, double nota) {
         if (disciplina == null || nota < 0 || nota > 10) {
             throw new IllegalArgumentException("Disciplina não pode ser nula e nota deve estar entre 0 e 10.");
         }
-        if (notas.containsKey(disciplina)) {
-            notas.put(disciplina, nota);
+        double anterior;
+        if (quadro != null) {
+            anterior = quadro.atribuir(this, disciplina, nota);
+        } else if (notas.containsKey(disciplina)) {
+            anterior = notas.put(disciplina, nota);
         } else {
             throw new IllegalArgumentException("Estudante não está matriculado na disciplina.");
         }
+        media.substituir(anterior, nota);
+        disciplina.getMediaAcumulada().substituir(anterior, nota);
+        if (ranking != null) {
+            ranking.registrar(this, disciplina);
+        }
     }
 
+    // Lida do acumulado, sem percorrer as notas
     public double calcularMedia() {
-        return notas.values().stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        return media.getMedia();
     }
 
+    // Só leitura (com quadro de notas, uma cópia): alterações devem passar por
+    // atribuirNota, senão as médias acumuladas deixam de bater com as notas
     public Map<Disciplina, Double> getNotas() {
-        return notas;
+        if (quadro != null) {
+            return quadro.notasDe(this);
+        }
+        return Collections.unmodifiableMap(notas);
+    }
+
+    // Nota atual na disciplina, ou null se não estiver matriculado
+    Double notaEm(Disciplina disciplina) {
+        if (quadro != null) {
+            return quadro.nota(this, disciplina);
+        }
+        return notas.get(disciplina);
+    }
+
+    public QuadroNotas getQuadro() {
+        return quadro;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // As notas passam a morar no quadro; o mapa local deixa de ser usado
+    void vincular(QuadroNotas quadro, int id) {
+        this.quadro = quadro;
+        this.id = id;
+        this.notas = new HashMap<>();
+    }
+
+    void vincular(RankingEstudantes ranking) {
+        if (this.ranking != null && this.ranking != ranking) {
+            throw new IllegalArgumentException("O estudante " + nome + " já é classificado por outro ranking.");
+        }
+        this.ranking = ranking;
     }
 }
 
@@ -123,6 +236,878 @@ class Professor {
     }
 }
 
+// Classe MediaAcumulada: soma e quantidade de notas, atualizadas em O(1). A soma
+// é compensada (Kahan-Neumaier) para que trocas repetidas de nota não acumulem
+// erro de arredondamento.
+class MediaAcumulada {
+    private double soma;
+    private double compensacao;
+    private int total;
+
+    synchronized void adicionar(double nota) {
+        somar(nota);
+        total++;
+    }
+
+    // Troca uma nota já contada por outra, sem mudar a quantidade
+    synchronized void substituir(double anterior, double nova) {
+        somar(nova);
+        somar(-anterior);
+    }
+
+    synchronized double getMedia() {
+        return total == 0 ? 0.0 : (soma + compensacao) / total;
+    }
+
+    synchronized int getTotal() {
+        return total;
+    }
+
+    private void somar(double valor) {
+        double resultado = soma + valor;
+        if (Math.abs(soma) >= Math.abs(valor)) {
+            compensacao += (soma - resultado) + valor;
+        } else {
+            compensacao += (valor - resultado) + soma;
+        }
+        soma = resultado;
+    }
+}
+
+// Classe QuadroNotas: guarda as notas em colunas de tipos primitivos, uma linha
+// por matrícula (estudante, disciplina, nota). Estudantes e disciplinas recebem
+// um id sequencial ao serem cadastrados. As linhas de cada estudante formam uma
+// lista encadeada por índice, e as médias por disciplina e por professor são
+// calculadas varrendo as colunas em laços simples.
+class QuadroNotas {
+    private static final int SEM_LINHA = -1;
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    private final List<Estudante> estudantes = new ArrayList<>();
+    private final List<Disciplina> disciplinas = new ArrayList<>();
+    private int[] estudanteDe = new int[CAPACIDADE_INICIAL];
+    private int[] disciplinaDe = new int[CAPACIDADE_INICIAL];
+    private int[] proximaDoEstudante = new int[CAPACIDADE_INICIAL];
+    private double[] notas = new double[CAPACIDADE_INICIAL];
+    private int linhas;
+    private int[] primeiraDoEstudante = new int[CAPACIDADE_INICIAL];
+
+    // Método para cadastrar um estudante; as notas que ele já tinha passam para o quadro
+    public synchronized void cadastrar(Estudante estudante) {
+        if (estudante == null) {
+            throw new IllegalArgumentException("Estudante não pode ser nulo.");
+        }
+        if (estudante.getQuadro() == this) {
+            return;
+        }
+        if (estudante.getQuadro() != null) {
+            throw new IllegalArgumentException("O estudante " + estudante.getNome() + " já pertence a outro quadro de notas.");
+        }
+        Map<Disciplina, Double> anteriores = estudante.getNotas();
+        for (Disciplina disciplina : anteriores.keySet()) {
+            verificar(disciplina);
+        }
+        int id = estudantes.size();
+        if (id == primeiraDoEstudante.length) {
+            primeiraDoEstudante = Arrays.copyOf(primeiraDoEstudante, id * 2);
+        }
+        primeiraDoEstudante[id] = SEM_LINHA;
+        estudantes.add(estudante);
+        for (Map.Entry<Disciplina, Double> nota : anteriores.entrySet()) {
+            cadastrar(nota.getKey());
+            acrescentar(id, nota.getKey().getId(), nota.getValue());
+        }
+        estudante.vincular(this, id);
+    }
+
+    // Método para cadastrar uma disciplina
+    public synchronized void cadastrar(Disciplina disciplina) {
+        verificar(disciplina);
+        if (disciplina.getQuadro() == null) {
+            disciplina.vincular(this, disciplinas.size());
+            disciplinas.add(disciplina);
+        }
+    }
+
+    // Matricula com nota inicial 0, como em Estudante.matricularDisciplina; devolve false se já estiver matriculado
+    public synchronized boolean matricular(Estudante estudante, Disciplina disciplina) {
+        int e = idDe(estudante);
+        cadastrar(disciplina);
+        if (linhaDe(e, disciplina.getId()) != SEM_LINHA) {
+            return false;
+        }
+        acrescentar(e, disciplina.getId(), 0.0);
+        return true;
+    }
+
+    // Devolve a nota que foi substituída
+    public synchronized double atribuir(Estudante estudante, Disciplina disciplina, double nota) {
+        int linha = disciplina.getQuadro() == this ? linhaDe(idDe(estudante), disciplina.getId()) : SEM_LINHA;
+        if (linha == SEM_LINHA) {
+            throw new IllegalArgumentException("Estudante não está matriculado na disciplina.");
+        }
+        double anterior = notas[linha];
+        notas[linha] = nota;
+        return anterior;
+    }
+
+    public synchronized boolean matriculado(Estudante estudante, Disciplina disciplina) {
+        return disciplina.getQuadro() == this && linhaDe(idDe(estudante), disciplina.getId()) != SEM_LINHA;
+    }
+
+    public synchronized Double nota(Estudante estudante, Disciplina disciplina) {
+        int linha = disciplina.getQuadro() == this ? linhaDe(idDe(estudante), disciplina.getId()) : SEM_LINHA;
+        return linha == SEM_LINHA ? null : notas[linha];
+    }
+
+    // Notas do estudante na forma de mapa (cópia, montada a cada chamada)
+    public synchronized Map<Disciplina, Double> notasDe(Estudante estudante) {
+        Map<Disciplina, Double> resultado = new HashMap<>();
+        for (int l = primeiraDoEstudante[idDe(estudante)]; l != SEM_LINHA; l = proximaDoEstudante[l]) {
+            resultado.put(disciplinas.get(disciplinaDe[l]), notas[l]);
+        }
+        return resultado;
+    }
+
+    public synchronized double mediaEstudante(Estudante estudante) {
+        double soma = 0;
+        int total = 0;
+        for (int l = primeiraDoEstudante[idDe(estudante)]; l != SEM_LINHA; l = proximaDoEstudante[l]) {
+            soma += notas[l];
+            total++;
+        }
+        return total == 0 ? 0.0 : soma / total;
+    }
+
+    public synchronized double mediaDisciplina(Disciplina disciplina) {
+        verificar(disciplina);
+        if (disciplina.getQuadro() == null) {
+            return 0.0;
+        }
+        int d = disciplina.getId();
+        int[] colunaDisciplina = disciplinaDe;
+        double[] colunaNota = notas;
+        double soma = 0;
+        int total = 0;
+        for (int l = 0; l < linhas; l++) {
+            boolean daDisciplina = colunaDisciplina[l] == d;
+            soma += daDisciplina ? colunaNota[l] : 0.0;
+            total += daDisciplina ? 1 : 0;
+        }
+        return total == 0 ? 0.0 : soma / total;
+    }
+
+    // Média de todas as matrículas nas disciplinas do professor que estão neste quadro
+    public synchronized double mediaProfessor(Professor professor) {
+        boolean[] leciona = new boolean[disciplinas.size()];
+        for (Disciplina disciplina : professor.getDisciplinas()) {
+            if (disciplina.getQuadro() == this) {
+                leciona[disciplina.getId()] = true;
+            }
+        }
+        int[] colunaDisciplina = disciplinaDe;
+        double[] colunaNota = notas;
+        double soma = 0;
+        int total = 0;
+        for (int l = 0; l < linhas; l++) {
+            if (leciona[colunaDisciplina[l]]) {
+                soma += colunaNota[l];
+                total++;
+            }
+        }
+        return total == 0 ? 0.0 : soma / total;
+    }
+
+    // Médias de todos os estudantes numa só passada, indexadas pelo id do estudante
+    public synchronized double[] mediasEstudantes() {
+        return medias(estudanteDe, estudantes.size());
+    }
+
+    // Médias de todas as disciplinas numa só passada, indexadas pelo id da disciplina
+    public synchronized double[] mediasDisciplinas() {
+        return medias(disciplinaDe, disciplinas.size());
+    }
+
+    // Método para liberar a folga das colunas depois de uma carga grande
+    public synchronized void compactar() {
+        int capacidade = Math.max(linhas, CAPACIDADE_INICIAL);
+        estudanteDe = Arrays.copyOf(estudanteDe, capacidade);
+        disciplinaDe = Arrays.copyOf(disciplinaDe, capacidade);
+        proximaDoEstudante = Arrays.copyOf(proximaDoEstudante, capacidade);
+        notas = Arrays.copyOf(notas, capacidade);
+        primeiraDoEstudante = Arrays.copyOf(primeiraDoEstudante, Math.max(estudantes.size(), CAPACIDADE_INICIAL));
+    }
+
+    public synchronized int getTotalNotas() {
+        return linhas;
+    }
+
+    public synchronized Estudante getEstudante(int id) {
+        return estudantes.get(id);
+    }
+
+    public synchronized Disciplina getDisciplina(int id) {
+        return disciplinas.get(id);
+    }
+
+    private double[] medias(int[] chave, int tamanho) {
+        double[] somas = new double[tamanho];
+        int[] totais = new int[tamanho];
+        double[] colunaNota = notas;
+        for (int l = 0; l < linhas; l++) {
+            int k = chave[l];
+            somas[k] += colunaNota[l];
+            totais[k]++;
+        }
+        for (int k = 0; k < tamanho; k++) {
+            somas[k] = totais[k] == 0 ? 0.0 : somas[k] / totais[k];
+        }
+        return somas;
+    }
+
+    private int idDe(Estudante estudante) {
+        if (estudante == null) {
+            throw new IllegalArgumentException("Estudante não pode ser nulo.");
+        }
+        if (estudante.getQuadro() != this) {
+            throw new IllegalArgumentException("O estudante " + estudante.getNome() + " não está cadastrado neste quadro de notas.");
+        }
+        return estudante.getId();
+    }
+
+    private void verificar(Disciplina disciplina) {
+        if (disciplina == null) {
+            throw new IllegalArgumentException("Disciplina não pode ser nula.");
+        }
+        if (disciplina.getQuadro() != null && disciplina.getQuadro() != this) {
+            throw new IllegalArgumentException("A disciplina " + disciplina.getNome() + " pertence a outro quadro de notas.");
+        }
+    }
+
+    private int linhaDe(int estudante, int disciplina) {
+        for (int l = primeiraDoEstudante[estudante]; l != SEM_LINHA; l = proximaDoEstudante[l]) {
+            if (disciplinaDe[l] == disciplina) {
+                return l;
+            }
+        }
+        return SEM_LINHA;
+    }
+
+    private void acrescentar(int estudante, int disciplina, double nota) {
+        if (linhas == notas.length) {
+            int capacidade = linhas * 2;
+            estudanteDe = Arrays.copyOf(estudanteDe, capacidade);
+            disciplinaDe = Arrays.copyOf(disciplinaDe, capacidade);
+            proximaDoEstudante = Arrays.copyOf(proximaDoEstudante, capacidade);
+            notas = Arrays.copyOf(notas, capacidade);
+        }
+        estudanteDe[linhas] = estudante;
+        disciplinaDe[linhas] = disciplina;
+        notas[linhas] = nota;
+        proximaDoEstudante[linhas] = primeiraDoEstudante[estudante];
+        primeiraDoEstudante[estudante] = linhas;
+        linhas++;
+    }
+}
+
+// Classe ArvoreClassificacao: árvore de ordem (treap) com o tamanho de cada
+// subárvore, ordenada por valor e, nos empates, pela ordem de chegada. Posição,
+// percentil e k-ésimo saem em O(log n) e o top-K em O(log n + K).
+class ArvoreClassificacao {
+    private static final class No {
+        final Estudante estudante;
+        final long chegada;
+        final int prioridade = ThreadLocalRandom.current().nextInt();
+        double valor;
+        int tamanho = 1;
+        No esquerda;
+        No direita;
+
+        No(Estudante estudante, long chegada, double valor) {
+            this.estudante = estudante;
+            this.chegada = chegada;
+            this.valor = valor;
+        }
+    }
+
+    private final Map<Estudante, No> nos = new HashMap<>();
+    private No raiz;
+    private long chegadas;
+
+    // Método para incluir o estudante ou mudar o valor dele
+    void atualizar(Estudante estudante, double valor) {
+        No no = nos.get(estudante);
+        if (no == null) {
+            no = new No(estudante, chegadas++, valor);
+            nos.put(estudante, no);
+        } else {
+            if (no.valor == valor) {
+                return;
+            }
+            raiz = remover(raiz, no);
+            no.valor = valor;
+            no.esquerda = null;
+            no.direita = null;
+            no.tamanho = 1;
+        }
+        raiz = inserir(raiz, no);
+    }
+
+    boolean contem(Estudante estudante) {
+        return nos.containsKey(estudante);
+    }
+
+    double valor(Estudante estudante) {
+        return nos.get(estudante).valor;
+    }
+
+    int tamanho() {
+        return tamanho(raiz);
+    }
+
+    // Quantos têm valor estritamente menor que o limite
+    int contarAbaixo(double limite) {
+        int total = 0;
+        No atual = raiz;
+        while (atual != null) {
+            if (atual.valor < limite) {
+                total += tamanho(atual.esquerda) + 1;
+                atual = atual.direita;
+            } else {
+                atual = atual.esquerda;
+            }
+        }
+        return total;
+    }
+
+    // Quantos têm valor estritamente maior que o limite
+    int contarAcima(double limite) {
+        int total = 0;
+        No atual = raiz;
+        while (atual != null) {
+            if (atual.valor > limite) {
+                total += tamanho(atual.direita) + 1;
+                atual = atual.esquerda;
+            } else {
+                atual = atual.direita;
+            }
+        }
+        return total;
+    }
+
+    // Valor na posição k (0 é o menor)
+    double valorNaPosicao(int k) {
+        No atual = raiz;
+        while (true) {
+            int esquerda = tamanho(atual.esquerda);
+            if (k < esquerda) {
+                atual = atual.esquerda;
+            } else if (k == esquerda) {
+                return atual.valor;
+            } else {
+                k -= esquerda + 1;
+                atual = atual.direita;
+            }
+        }
+    }
+
+    // Os k maiores valores, do maior para o menor
+    List<Estudante> maiores(int k) {
+        List<Estudante> resultado = new ArrayList<>(Math.min(k, tamanho()));
+        maiores(raiz, k, resultado);
+        return resultado;
+    }
+
+    // Todos com valor abaixo do limite, do menor para o maior
+    List<Estudante> abaixoDe(double limite) {
+        List<Estudante> resultado = new ArrayList<>();
+        abaixoDe(raiz, limite, resultado);
+        return resultado;
+    }
+
+    private static void maiores(No no, int k, List<Estudante> resultado) {
+        if (no == null || resultado.size() == k) {
+            return;
+        }
+        maiores(no.direita, k, resultado);
+        if (resultado.size() < k) {
+            resultado.add(no.estudante);
+            maiores(no.esquerda, k, resultado);
+        }
+    }
+
+    private static void abaixoDe(No no, double limite, List<Estudante> resultado) {
+        if (no == null) {
+            return;
+        }
+        abaixoDe(no.esquerda, limite, resultado);
+        if (no.valor < limite) {
+            resultado.add(no.estudante);
+            abaixoDe(no.direita, limite, resultado);
+        }
+    }
+
+    private static int tamanho(No no) {
+        return no == null ? 0 : no.tamanho;
+    }
+
+    private static boolean antes(No a, No b) {
+        return a.valor < b.valor || (a.valor == b.valor && a.chegada < b.chegada);
+    }
+
+    private static No inserir(No atual, No no) {
+        if (atual == null) {
+            return no;
+        }
+        if (antes(no, atual)) {
+            atual.esquerda = inserir(atual.esquerda, no);
+            if (atual.esquerda.prioridade > atual.prioridade) {
+                atual = girarDireita(atual);
+            }
+        } else {
+            atual.direita = inserir(atual.direita, no);
+            if (atual.direita.prioridade > atual.prioridade) {
+                atual = girarEsquerda(atual);
+            }
+        }
+        atual.tamanho = tamanho(atual.esquerda) + tamanho(atual.direita) + 1;
+        return atual;
+    }
+
+    private static No remover(No atual, No no) {
+        if (atual == no) {
+            return juntar(no.esquerda, no.direita);
+        }
+        if (antes(no, atual)) {
+            atual.esquerda = remover(atual.esquerda, no);
+        } else {
+            atual.direita = remover(atual.direita, no);
+        }
+        atual.tamanho--;
+        return atual;
+    }
+
+    private static No juntar(No menores, No maiores) {
+        if (menores == null) {
+            return maiores;
+        }
+        if (maiores == null) {
+            return menores;
+        }
+        if (menores.prioridade > maiores.prioridade) {
+            menores.direita = juntar(menores.direita, maiores);
+            menores.tamanho = tamanho(menores.esquerda) + tamanho(menores.direita) + 1;
+            return menores;
+        }
+        maiores.esquerda = juntar(menores, maiores.esquerda);
+        maiores.tamanho = tamanho(maiores.esquerda) + tamanho(maiores.direita) + 1;
+        return maiores;
+    }
+
+    private static No girarDireita(No no) {
+        No filho = no.esquerda;
+        no.esquerda = filho.direita;
+        filho.direita = no;
+        no.tamanho = tamanho(no.esquerda) + tamanho(no.direita) + 1;
+        return filho;
+    }
+
+    private static No girarEsquerda(No no) {
+        No filho = no.direita;
+        no.direita = filho.esquerda;
+        filho.esquerda = no;
+        no.tamanho = tamanho(no.esquerda) + tamanho(no.direita) + 1;
+        return filho;
+    }
+}
+
+// Classe RankingEstudantes: classificação dos estudantes acompanhados, geral
+// (pela média) e por disciplina (pela nota na disciplina). É atualizada pelo
+// próprio Estudante a cada matrícula e a cada nota atribuída. Na posição, quem
+// tem o mesmo valor fica empatado; o percentil é a porcentagem de estudantes
+// com valor estritamente menor.
+class RankingEstudantes {
+    private final ArvoreClassificacao geral = new ArvoreClassificacao();
+    private final Map<Disciplina, ArvoreClassificacao> porDisciplina = new HashMap<>();
+
+    // Método para passar a classificar o estudante, com as notas que ele já tem
+    public synchronized void acompanhar(Estudante estudante) {
+        if (estudante == null) {
+            throw new IllegalArgumentException("Estudante não pode ser nulo.");
+        }
+        estudante.vincular(this);
+        for (Map.Entry<Disciplina, Double> nota : estudante.getNotas().entrySet()) {
+            arvore(nota.getKey()).atualizar(estudante, nota.getValue());
+        }
+        geral.atualizar(estudante, estudante.calcularMedia());
+    }
+
+    // Lê nota e média atuais sob a trava do ranking: com escritas concorrentes,
+    // a última chamada grava o estado final, seja qual for a ordem de chegada
+    synchronized void registrar(Estudante estudante, Disciplina disciplina) {
+        Double nota = estudante.notaEm(disciplina);
+        if (nota != null) {
+            arvore(disciplina).atualizar(estudante, nota);
+        }
+        geral.atualizar(estudante, estudante.calcularMedia());
+    }
+
+    public synchronized List<Estudante> melhores(int k) {
+        return geral.maiores(k);
+    }
+
+    public synchronized List<Estudante> melhores(Disciplina disciplina, int k) {
+        ArvoreClassificacao arvore = porDisciplina.get(disciplina);
+        return arvore == null ? new ArrayList<>() : arvore.maiores(k);
+    }
+
+    // Posição do estudante (1 é a maior média)
+    public synchronized int posicao(Estudante estudante) {
+        return posicao(geral, estudante);
+    }
+
+    public synchronized int posicao(Estudante estudante, Disciplina disciplina) {
+        return posicao(porDisciplina.get(disciplina), estudante);
+    }
+
+    public synchronized double percentil(Estudante estudante) {
+        return percentil(geral, estudante);
+    }
+
+    public synchronized double percentil(Estudante estudante, Disciplina disciplina) {
+        return percentil(porDisciplina.get(disciplina), estudante);
+    }
+
+    // Média no percentil p (0 a 100), pelo método do posto mais próximo
+    public synchronized double mediaNoPercentil(double p) {
+        return valorNoPercentil(geral, p);
+    }
+
+    public synchronized double notaNoPercentil(Disciplina disciplina, double p) {
+        return valorNoPercentil(porDisciplina.get(disciplina), p);
+    }
+
+    // Estudantes com média abaixo do limite, da menor para a maior
+    public synchronized List<Estudante> abaixoDe(double limite) {
+        return geral.abaixoDe(limite);
+    }
+
+    public synchronized List<Estudante> abaixoDe(Disciplina disciplina, double limite) {
+        ArvoreClassificacao arvore = porDisciplina.get(disciplina);
+        return arvore == null ? new ArrayList<>() : arvore.abaixoDe(limite);
+    }
+
+    public synchronized int contarAbaixo(double limite) {
+        return geral.contarAbaixo(limite);
+    }
+
+    public synchronized int contarAbaixo(Disciplina disciplina, double limite) {
+        ArvoreClassificacao arvore = porDisciplina.get(disciplina);
+        return arvore == null ? 0 : arvore.contarAbaixo(limite);
+    }
+
+    public synchronized int getTotal() {
+        return geral.tamanho();
+    }
+
+    private ArvoreClassificacao arvore(Disciplina disciplina) {
+        return porDisciplina.computeIfAbsent(disciplina, d -> new ArvoreClassificacao());
+    }
+
+    private static int posicao(ArvoreClassificacao arvore, Estudante estudante) {
+        verificar(arvore, estudante);
+        return arvore.contarAcima(arvore.valor(estudante)) + 1;
+    }
+
+    private static double percentil(ArvoreClassificacao arvore, Estudante estudante) {
+        verificar(arvore, estudante);
+        return 100.0 * arvore.contarAbaixo(arvore.valor(estudante)) / arvore.tamanho();
+    }
+
+    private static double valorNoPercentil(ArvoreClassificacao arvore, double p) {
+        if (p < 0 || p > 100) {
+            throw new IllegalArgumentException("Percentil deve estar entre 0 e 100.");
+        }
+        if (arvore == null || arvore.tamanho() == 0) {
+            throw new IllegalArgumentException("Não há estudantes classificados.");
+        }
+        int posto = (int) Math.ceil(p / 100 * arvore.tamanho());
+        return arvore.valorNaPosicao(Math.max(posto, 1) - 1);
+    }
+
+    private static void verificar(ArvoreClassificacao arvore, Estudante estudante) {
+        if (arvore == null || !arvore.contem(estudante)) {
+            throw new IllegalArgumentException("O estudante " + estudante.getNome() + " não está classificado.");
+        }
+    }
+}
+
+// Classe RelatorioImportacao: contagens e tempo de cada fase de uma importação
+class RelatorioImportacao {
+    static final int MAXIMO_ERROS = 100;
+
+    long linhas;
+    long matriculas;
+    long notas;
+    long duplicadas;
+    long rejeitadas;
+    final List<String> erros = new ArrayList<>();
+    long nanosLeitura;
+    long nanosAnalise;
+    long nanosEspera;
+    long nanosMesclagem;
+    long nanosTotal;
+
+    void rejeitar(String erro) {
+        rejeitadas++;
+        if (erros.size() < MAXIMO_ERROS) {
+            erros.add(erro);
+        }
+    }
+
+    public long getLinhas() {
+        return linhas;
+    }
+
+    public long getMatriculas() {
+        return matriculas;
+    }
+
+    public long getNotas() {
+        return notas;
+    }
+
+    public long getDuplicadas() {
+        return duplicadas;
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas;
+    }
+
+    // Só as primeiras MAXIMO_ERROS linhas rejeitadas são descritas
+    public List<String> getErros() {
+        return Collections.unmodifiableList(erros);
+    }
+
+    public double getLinhasPorSegundo() {
+        return nanosTotal == 0 ? 0 : linhas * 1e9 / nanosTotal;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d linhas em %.1f ms (%.0f linhas/s): %d matrículas novas, %d notas, %d duplicadas, %d rejeitadas%n"
+                        + "leitura %.1f ms, análise %.1f ms (somada entre as threads), espera %.1f ms, mesclagem %.1f ms",
+                linhas, nanosTotal / 1e6, getLinhasPorSegundo(), matriculas, notas, duplicadas, rejeitadas,
+                nanosLeitura / 1e6, nanosAnalise / 1e6, nanosEspera / 1e6, nanosMesclagem / 1e6);
+    }
+}
+
+// Classe ImportadorNotas: carga em lote de matrículas e notas a partir de texto,
+// uma linha por matrícula no formato "estudante;disciplina[;nota]" (a nota aceita
+// vírgula ou ponto decimal; linhas vazias e iniciadas por # são ignoradas).
+// O arquivo é lido em blocos; cada bloco é analisado e validado numa thread do
+// ForkJoinPool enquanto a leitura continua, e os blocos prontos são mesclados,
+// na ordem do arquivo, nos objetos do domínio. Estudantes e disciplinas são
+// encontrados pelo nome e criados quando ainda não existem. Uma matrícula que
+// já existe na disciplina (do próprio arquivo ou de antes) conta como duplicada,
+// e a última nota vale.
+class ImportadorNotas {
+    private static final int LINHAS_POR_BLOCO = 8192;
+
+    private final Map<String, Estudante> estudantes = new HashMap<>();
+    private final Map<String, Disciplina> disciplinas = new HashMap<>();
+    private final ForkJoinPool pool;
+    private QuadroNotas quadro;
+
+    public ImportadorNotas() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ImportadorNotas(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Método para informar estudantes e disciplinas já existentes, que serão encontrados pelo nome
+    public void conhecer(Estudante estudante) {
+        estudantes.putIfAbsent(estudante.getNome(), estudante);
+    }
+
+    public void conhecer(Disciplina disciplina) {
+        disciplinas.putIfAbsent(disciplina.getNome(), disciplina);
+    }
+
+    // Estudantes novos criados pela importação passam a ser cadastrados neste quadro
+    public void definirQuadro(QuadroNotas quadro) {
+        this.quadro = quadro;
+    }
+
+    public Map<String, Estudante> getEstudantes() {
+        return Collections.unmodifiableMap(estudantes);
+    }
+
+    public Map<String, Disciplina> getDisciplinas() {
+        return Collections.unmodifiableMap(disciplinas);
+    }
+
+    public RelatorioImportacao importar(Path arquivo) throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            return importar(leitor);
+        }
+    }
+
+    public RelatorioImportacao importar(BufferedReader leitor) throws IOException {
+        RelatorioImportacao relatorio = new RelatorioImportacao();
+        long inicio = System.nanoTime();
+        Deque<ForkJoinTask<Bloco>> emAnalise = new ArrayDeque<>();
+        int limite = Math.max(2, pool.getParallelism() * 2);
+        long numeroLinha = 0;
+        boolean fim = false;
+        while (!fim) {
+            long inicioLeitura = System.nanoTime();
+            List<String> linhas = new ArrayList<>(LINHAS_POR_BLOCO);
+            long primeiraLinha = numeroLinha + 1;
+            String linha;
+            while (linhas.size() < LINHAS_POR_BLOCO && (linha = leitor.readLine()) != null) {
+                linhas.add(linha);
+            }
+            numeroLinha += linhas.size();
+            fim = linhas.size() < LINHAS_POR_BLOCO;
+            relatorio.nanosLeitura += System.nanoTime() - inicioLeitura;
+            if (!linhas.isEmpty()) {
+                emAnalise.addLast(pool.submit(new Analise(linhas, primeiraLinha)));
+            }
+            while (emAnalise.size() >= limite || (fim && !emAnalise.isEmpty())) {
+                mesclar(aguardar(emAnalise.removeFirst(), relatorio), relatorio);
+            }
+        }
+        relatorio.nanosTotal = System.nanoTime() - inicio;
+        return relatorio;
+    }
+
+    private Bloco aguardar(ForkJoinTask<Bloco> tarefa, RelatorioImportacao relatorio) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            return tarefa.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importação interrompida");
+        } catch (ExecutionException e) {
+            throw new IOException("Falha ao analisar bloco da importação", e.getCause());
+        } finally {
+            relatorio.nanosEspera += System.nanoTime() - inicio;
+        }
+    }
+
+    private void mesclar(Bloco bloco, RelatorioImportacao relatorio) {
+        long inicio = System.nanoTime();
+        relatorio.nanosAnalise += bloco.nanos;
+        relatorio.linhas += bloco.linhas;
+        for (String erro : bloco.erros) {
+            relatorio.rejeitar(erro);
+        }
+        for (int i = 0; i < bloco.total; i++) {
+            Estudante estudante = estudantes.get(bloco.estudantes[i]);
+            if (estudante == null) {
+                estudante = new Estudante(bloco.estudantes[i]);
+                if (quadro != null) {
+                    quadro.cadastrar(estudante);
+                }
+                estudantes.put(estudante.getNome(), estudante);
+            }
+            Disciplina disciplina = disciplinas.computeIfAbsent(bloco.disciplinas[i], Disciplina::new);
+            if (disciplina.temMatriculado(estudante)) {
+                relatorio.duplicadas++;
+            } else {
+                disciplina.matricularEstudante(estudante);
+                relatorio.matriculas++;
+            }
+            if (!Double.isNaN(bloco.notas[i])) {
+                estudante.atribuirNota(disciplina, bloco.notas[i]);
+                relatorio.notas++;
+            }
+        }
+        relatorio.nanosMesclagem += System.nanoTime() - inicio;
+    }
+
+    // Resultado da análise de um bloco: colunas com as linhas válidas e as mensagens das rejeitadas
+    private static final class Bloco {
+        final String[] estudantes;
+        final String[] disciplinas;
+        final double[] notas;
+        final List<String> erros = new ArrayList<>();
+        int total;
+        int linhas;
+        long nanos;
+
+        Bloco(int capacidade) {
+            estudantes = new String[capacidade];
+            disciplinas = new String[capacidade];
+            notas = new double[capacidade];
+        }
+    }
+
+    private static final class Analise implements Callable<Bloco> {
+        private final List<String> linhas;
+        private final long primeiraLinha;
+
+        Analise(List<String> linhas, long primeiraLinha) {
+            this.linhas = linhas;
+            this.primeiraLinha = primeiraLinha;
+        }
+
+        @Override
+        public Bloco call() {
+            long inicio = System.nanoTime();
+            Bloco bloco = new Bloco(linhas.size());
+            bloco.linhas = linhas.size();
+            for (int i = 0; i < linhas.size(); i++) {
+                String erro = analisar(linhas.get(i), bloco);
+                if (erro != null) {
+                    bloco.erros.add("Linha " + (primeiraLinha + i) + ": " + erro);
+                }
+            }
+            bloco.nanos = System.nanoTime() - inicio;
+            return bloco;
+        }
+
+        // Devolve a mensagem de erro, ou null se a linha foi aceita (ou ignorada)
+        private static String analisar(String linha, Bloco bloco) {
+            String texto = linha.trim();
+            if (texto.isEmpty() || texto.charAt(0) == '#') {
+                return null;
+            }
+            int primeiro = texto.indexOf(';');
+            int segundo = primeiro < 0 ? -1 : texto.indexOf(';', primeiro + 1);
+            if (primeiro < 0 || (segundo >= 0 && texto.indexOf(';', segundo + 1) >= 0)) {
+                return "esperado estudante;disciplina[;nota]";
+            }
+            String estudante = texto.substring(0, primeiro).trim();
+            String disciplina = (segundo < 0 ? texto.substring(primeiro + 1) : texto.substring(primeiro + 1, segundo)).trim();
+            if (estudante.isEmpty() || disciplina.isEmpty()) {
+                return "nome do estudante e da disciplina não podem ser vazios";
+            }
+            double nota = Double.NaN;
+            String campoNota = segundo < 0 ? "" : texto.substring(segundo + 1).trim();
+            if (!campoNota.isEmpty()) {
+                try {
+                    nota = Double.parseDouble(campoNota.replace(',', '.'));
+                } catch (NumberFormatException e) {
+                    return "nota inválida: " + campoNota;
+                }
+                if (!(nota >= 0 && nota <= 10)) {
+                    return "nota deve estar entre 0 e 10: " + campoNota;
+                }
+            }
+            int i = bloco.total++;
+            bloco.estudantes[i] = estudante;
+            bloco.disciplinas[i] = disciplina;
+            bloco.notas[i] = nota;
+            return null;
+        }
+    }
+}
+
 // Classe principal para executar o código
 public class Estudanteapp {
 
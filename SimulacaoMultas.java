@@ -0,0 +1,195 @@
+package biblioteca;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Simulação de anos de circulação com um relógio que avança um dia por vez:
+ * a cada dia há empréstimos, devoluções, pagamentos e, na maioria dos dias,
+ * a apuração de multas em lote (às vezes ela pula dias). No fim, a multa de
+ * cada usuário é conferida contra o cálculo empréstimo a empréstimo: dias de
+ * atraso até a devolução, ou até a última apuração para os que seguem
+ * abertos, menos o que foi pago. Também confere a lista de empréstimos em
+ * atraso. Não usa o diário.
+ *
+ * Uso: java biblioteca.SimulacaoMultas [anos] [semente]
+ */
+public class SimulacaoMultas {
+
+    private static final LocalDate INICIO = LocalDate.of(2020, 1, 1);
+
+    /**
+     * Relógio de teste: fica parado até ser avançado.
+     */
+    private static final class RelogioSimulado extends Clock {
+        private volatile Instant agora = INICIO.atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        void avancar(Duration passo) {
+            agora = agora.plus(passo);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return agora;
+        }
+    }
+
+    /**
+     * Um empréstimo visto de fora da biblioteca: dia de saída e de volta.
+     */
+    private static final class Saida {
+        final Usuario usuario;
+        final Livro livro;
+        final long emprestimo;
+        long devolucao = -1;
+
+        Saida(Usuario usuario, Livro livro, long emprestimo) {
+            this.usuario = usuario;
+            this.livro = livro;
+            this.emprestimo = emprestimo;
+        }
+
+        long vencimento() {
+            return emprestimo + Emprestimo.PRAZO_DIAS;
+        }
+
+        // Multa cobrada até o dia informado, contada dia a dia
+        long multaAte(long dia) {
+            long multa = 0;
+            for (long d = vencimento() + 1; d <= dia; d++) {
+                multa += Emprestimo.MULTA_DIARIA;
+            }
+            return multa;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int anos = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 7;
+        Random aleatorio = new Random(semente);
+
+        RelogioSimulado relogio = new RelogioSimulado();
+        Biblioteca biblioteca = new Biblioteca();
+        biblioteca.definirRelogio(relogio);
+        Autor autor = new Autor("Autor Simulado");
+        List<Livro> livros = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Livro livro = new Livro("Livro " + i, autor, 1 + i % 4);
+            biblioteca.adicionarLivro(livro);
+            livros.add(livro);
+        }
+        List<Usuario> usuarios = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            Usuario usuario = new Usuario("Usuário " + i);
+            biblioteca.adicionarUsuario(usuario);
+            usuarios.add(usuario);
+        }
+
+        PrintStream saida = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Map<Long, Saida> abertas = new HashMap<>();
+        List<Saida> todas = new ArrayList<>();
+        Map<Usuario, Long> pagos = new HashMap<>();
+        long ultimaApuracao = Long.MIN_VALUE;
+        int apuracoes = 0;
+        long dias = INICIO.plusYears(anos).toEpochDay() - INICIO.toEpochDay();
+        try {
+            for (long passo = 0; passo < dias; passo++) {
+                long hoje = INICIO.toEpochDay() + passo;
+                // Cada empréstimo aberto volta com chance de 1/15 por dia: muitos
+                // passam do prazo de 7 dias, alguns por meses.
+                for (Saida aberta : new ArrayList<>(abertas.values())) {
+                    if (aleatorio.nextInt(15) == 0) {
+                        aberta.usuario.devolverLivro(aberta.livro, biblioteca);
+                        aberta.devolucao = hoje;
+                        abertas.remove(RegistroEmprestimos.chave(aberta.usuario, aberta.livro));
+                    }
+                }
+                for (int i = 0; i < 10; i++) {
+                    Usuario usuario = usuarios.get(aleatorio.nextInt(usuarios.size()));
+                    Livro livro = livros.get(aleatorio.nextInt(livros.size()));
+                    long chave = RegistroEmprestimos.chave(usuario, livro);
+                    // Livro emprestado a outros viraria reserva; só empresta com exemplar livre.
+                    if (!abertas.containsKey(chave) && livro.isDisponivel()) {
+                        usuario.emprestarLivro(livro, biblioteca);
+                        Saida nova = new Saida(usuario, livro, hoje);
+                        abertas.put(chave, nova);
+                        todas.add(nova);
+                    }
+                }
+                Usuario pagante = usuarios.get(aleatorio.nextInt(usuarios.size()));
+                long valor = pagante.getMultaAcumulada() / 2;
+                if (valor > 0) {
+                    pagante.pagarMulta(valor);
+                    pagos.merge(pagante, valor, Long::sum);
+                }
+                if (aleatorio.nextInt(10) < 7) {
+                    biblioteca.apurarMultas();
+                    ultimaApuracao = hoje;
+                    apuracoes++;
+                }
+                relogio.avancar(Duration.ofDays(1));
+            }
+        } finally {
+            biblioteca.encerrarNotificacoes();
+            System.setOut(saida);
+        }
+
+        Map<Usuario, Long> esperadas = new HashMap<>();
+        Set<Saida> esperadosEmAtraso = new HashSet<>();
+        for (Saida s : todas) {
+            long ate = s.devolucao >= 0 ? s.devolucao : ultimaApuracao;
+            esperadas.merge(s.usuario, s.multaAte(ate), Long::sum);
+            if (s.devolucao < 0 && s.vencimento() < ultimaApuracao) {
+                esperadosEmAtraso.add(s);
+            }
+        }
+        long totalMultas = 0;
+        for (Usuario usuario : usuarios) {
+            long esperada = esperadas.getOrDefault(usuario, 0L) - pagos.getOrDefault(usuario, 0L);
+            if (usuario.getMultaAcumulada() != esperada) {
+                throw new IllegalStateException(usuario.getNome() + " com multa " + usuario.getMultaAcumulada()
+                        + ", esperada " + esperada);
+            }
+            totalMultas += esperadas.getOrDefault(usuario, 0L);
+        }
+        List<Emprestimo> emAtraso = biblioteca.listarEmprestimosEmAtraso();
+        if (emAtraso.size() != esperadosEmAtraso.size()) {
+            throw new IllegalStateException(emAtraso.size() + " empréstimos em atraso, esperados "
+                    + esperadosEmAtraso.size());
+        }
+        for (Emprestimo emprestimo : emAtraso) {
+            Saida s = abertas.get(RegistroEmprestimos.chave(emprestimo.getUsuario(), emprestimo.getLivro()));
+            if (s == null || !esperadosEmAtraso.contains(s)) {
+                throw new IllegalStateException("Empréstimo em atraso inesperado: " + emprestimo.getLivro().getTitulo());
+            }
+        }
+
+        System.out.println(anos + " anos simulados: " + todas.size() + " empréstimos, " + apuracoes
+                + " apurações, " + totalMultas + " em multas, " + emAtraso.size() + " em atraso no fim");
+        System.out.println("Multas conferidas: OK");
+    }
+}
@@ -1,77 +1,1022 @@
 package reservas;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Sistema de Reservas de Passagens.
  */
 public class SistemaReservas {
+    private final ConcurrentHashMap<String, Voo> voos = new ConcurrentHashMap<>();
+    private final List<Passageiro> passageiros = new ArrayList<>();
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
 
     /**
      * Classe que representa um passageiro.
      */
     public static class Passageiro {
         private final String nome;
-        private final List<Reserva> reservas = new ArrayList<>();
+        // Conjunto por identidade, criado na primeira reserva: cancelar remove
+        // em O(1), sem varrer a fila; a ordem de criação é refeita na leitura.
+        private volatile Set<Reserva> reservas;
+        private volatile int id = -1;
+        private SistemaReservas sistema;
 
         public Passageiro(String nome) {
             this.nome = Objects.requireNonNull(nome, "Nome não pode ser nulo");
         }
 
+        void vincular(SistemaReservas sistema, int id) {
+            this.sistema = sistema;
+            this.id = id;
+        }
+
         public void reservarAssento(Voo voo) {
-            if (voo.isDisponivel()) {
-                Reserva reserva = new Reserva(this, voo);
-                reservas.add(reserva);
-                voo.adicionarReserva(reserva);
-                System.out.println("Reserva confirmada para o voo: " + voo.getNumero());
+            Reserva reserva = voo.reservar(this);
+            if (reserva != null) {
+                System.out.println("Reserva confirmada para o voo: " + voo.getNumero() + " - Assento: " + (reserva.getAssento() > 0 ? reserva.getAssento() : "a definir"));
             } else {
                 System.out.println("O voo " + voo.getNumero() + " está cheio.");
             }
         }
 
+        /**
+         * Reserva se houver vaga; senão entra na lista de espera do voo com a prioridade dada.
+         */
+        public Espera reservarOuAguardar(Voo voo, int prioridade) {
+            Espera entrada = voo.aguardar(this, prioridade);
+            if (entrada.isPromovido()) {
+                System.out.println("Reserva confirmada para o voo: " + voo.getNumero());
+            } else {
+                System.out.println("O voo " + voo.getNumero() + " está cheio. " + nome + " entrou na lista de espera.");
+            }
+            return entrada;
+        }
+
+        public void cancelarReserva(Reserva reserva) {
+            if (reserva.cancelar()) {
+                System.out.println("Reserva cancelada para o voo: " + reserva.getVoo().getNumero());
+            } else {
+                System.out.println("A reserva para o voo " + reserva.getVoo().getNumero() + " não está ativa.");
+            }
+        }
+
+        public void reservarAssento(Voo voo, int assento) {
+            Reserva reserva = voo.reservar(this, assento);
+            if (reserva != null) {
+                System.out.println("Reserva confirmada para o voo: " + voo.getNumero() + " - Assento: " + assento);
+            } else {
+                System.out.println("O assento " + assento + " do voo " + voo.getNumero() + " não está disponível.");
+            }
+        }
+
+        void adicionarReserva(Reserva reserva) {
+            Set<Reserva> atuais = reservas;
+            if (atuais == null) {
+                synchronized (this) {
+                    if (reservas == null) {
+                        reservas = ConcurrentHashMap.newKeySet(2);
+                    }
+                    atuais = reservas;
+                }
+            }
+            atuais.add(reserva);
+        }
+
+        void removerReserva(Reserva reserva) {
+            Set<Reserva> atuais = reservas;
+            if (atuais != null) {
+                atuais.remove(reserva);
+            }
+        }
+
+        // Reservas do passageiro em ordem de criação
+        List<Reserva> getReservas() {
+            Set<Reserva> atuais = reservas;
+            if (atuais == null) {
+                return new ArrayList<>();
+            }
+            List<Reserva> lista = new ArrayList<>(atuais);
+            lista.sort(Reserva.POR_CRIACAO);
+            return lista;
+        }
+
         public void listarReservas() {
             System.out.println("Reservas de " + nome + ":");
-            reservas.forEach(Reserva::exibir);
+            getReservas().forEach(Reserva::exibir);
         }
 
         public String getNome() {
             return nome;
         }
+
+        /**
+         * Id atribuído pelo cadastro no sistema, ou -1 se o passageiro não foi cadastrado.
+         */
+        public int getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Mapa de assentos de um voo, sem travas.
+     * Cada assento é um bit: 1 se está bloqueado ou confirmado. Um assento é
+     * tomado por CAS na palavra de 64 bits que o contém, então duas threads
+     * nunca ficam com o mesmo assento e o voo nunca passa da capacidade.
+     * O prazo de cada bloqueio fica em {@code prazos}: 0 significa confirmado
+     * (ou em transição) e um valor positivo é o instante em que o bloqueio
+     * expira. Bloqueios vencidos são recuperados sob demanda, trocando o
+     * prazo vencido por 0 com CAS antes de liberar o bit; os pendentes ficam
+     * numa fila ordenada por prazo, então a recuperação só visita os vencidos.
+     * Cada bloqueio que vence (recuperado, recusado na confirmação ou tomado
+     * por outro dono) avisa o dono do mapa, para que o voo devolva a vaga de
+     * venda que o bloqueio ocupava.
+     */
+    public static class MapaAssentos {
+        private static final long CONFIRMADO = 0;
+
+        private final int capacidade;
+        private final AtomicLongArray ocupados;
+        private final AtomicLongArray prazos;
+        private final ConcurrentSkipListSet<Bloqueio> vencimentos = new ConcurrentSkipListSet<>(Bloqueio.POR_PRAZO);
+        private final AtomicInteger totalOcupados = new AtomicInteger();
+        private final AtomicInteger dica = new AtomicInteger();
+        private final long origem = System.nanoTime();
+        private final Runnable aoVencer;
+
+        public MapaAssentos(int capacidade) {
+            this(capacidade, null);
+        }
+
+        MapaAssentos(int capacidade, Runnable aoVencer) {
+            if (capacidade <= 0) {
+                throw new IllegalArgumentException("Capacidade deve ser positiva");
+            }
+            this.capacidade = capacidade;
+            this.ocupados = new AtomicLongArray((capacidade + 63) >>> 6);
+            this.prazos = new AtomicLongArray(capacidade);
+            this.aoVencer = aoVencer;
+        }
+
+        /**
+         * Confirma qualquer assento livre; retorna o número (a partir de 1) ou -1 se o voo está cheio.
+         */
+        public int ocupar() {
+            int indice = tomarQualquer();
+            return indice < 0 ? -1 : indice + 1;
+        }
+
+        /**
+         * Confirma o assento informado; retorna {@code false} se ele não está livre.
+         */
+        public boolean ocupar(int assento) {
+            return tomar(indiceDe(assento));
+        }
+
+        /**
+         * Confirma até {@code quantidade} assentos numa só varredura do mapa,
+         * tomando vários bits da mesma palavra com um único CAS. Os números
+         * (a partir de 1) são gravados em {@code destino}; retorna quantos foram obtidos.
+         */
+        public int ocupar(int quantidade, int[] destino) {
+            if (quantidade > destino.length) {
+                throw new IllegalArgumentException("Destino menor que a quantidade pedida");
+            }
+            int obtidos = tomarVarios(quantidade, destino, 0);
+            if (obtidos < quantidade && recuperarExpirados() > 0) {
+                obtidos = tomarVarios(quantidade, destino, obtidos);
+            }
+            return obtidos;
+        }
+
+        /**
+         * Bloqueia qualquer assento livre até o prazo expirar; retorna null se o voo está cheio.
+         */
+        public Bloqueio bloquear(Duration validade) {
+            int indice = tomarQualquer();
+            return indice < 0 ? null : iniciarBloqueio(indice, validade);
+        }
+
+        public Bloqueio bloquear(int assento, Duration validade) {
+            int indice = indiceDe(assento);
+            return tomar(indice) ? iniciarBloqueio(indice, validade) : null;
+        }
+
+        /**
+         * Converte o bloqueio em assento confirmado; falha se ele já expirou e foi recuperado.
+         */
+        public boolean confirmar(Bloqueio bloqueio) {
+            int indice = bloqueio.getAssento() - 1;
+            vencimentos.remove(bloqueio);
+            if (bloqueio.prazo <= agora()) {
+                if (prazos.compareAndSet(indice, bloqueio.prazo, CONFIRMADO)) {
+                    soltar(indice);
+                    avisarVencimento();
+                }
+                return false;
+            }
+            return prazos.compareAndSet(indice, bloqueio.prazo, CONFIRMADO);
+        }
+
+        /**
+         * Desiste de um bloqueio ainda válido, devolvendo o assento.
+         */
+        public boolean liberar(Bloqueio bloqueio) {
+            int indice = bloqueio.getAssento() - 1;
+            vencimentos.remove(bloqueio);
+            if (!prazos.compareAndSet(indice, bloqueio.prazo, CONFIRMADO)) {
+                return false;
+            }
+            soltar(indice);
+            return true;
+        }
+
+        /**
+         * Libera um assento confirmado (cancelamento).
+         */
+        public void liberar(int assento) {
+            soltar(indiceDe(assento));
+        }
+
+        /**
+         * Devolve ao mapa os assentos de bloqueios vencidos; retorna quantos foram recuperados.
+         */
+        public int recuperarExpirados() {
+            long agora = agora();
+            int recuperados = 0;
+            for (Bloqueio bloqueio : vencimentos) {
+                if (bloqueio.prazo > agora) {
+                    break;
+                }
+                // Entradas de bloqueios já tomados de volta por tomar() falham no CAS.
+                int indice = bloqueio.getAssento() - 1;
+                if (vencimentos.remove(bloqueio) && prazos.compareAndSet(indice, bloqueio.prazo, CONFIRMADO)) {
+                    soltar(indice);
+                    avisarVencimento();
+                    recuperados++;
+                }
+            }
+            return recuperados;
+        }
+
+        /**
+         * Um assento com bloqueio vencido conta como livre, mesmo antes de ser recuperado.
+         */
+        public boolean isOcupado(int assento) {
+            int indice = indiceDe(assento);
+            if ((ocupados.get(indice >>> 6) & (1L << indice)) == 0) {
+                return false;
+            }
+            long prazo = prazos.get(indice);
+            return prazo == CONFIRMADO || prazo > agora();
+        }
+
+        public int getOcupados() {
+            return totalOcupados.get();
+        }
+
+        public int getLivres() {
+            return capacidade - totalOcupados.get();
+        }
+
+        public int getCapacidade() {
+            return capacidade;
+        }
+
+        private Bloqueio iniciarBloqueio(int indice, Duration validade) {
+            long prazo = Math.max(1, agora() + validade.toNanos());
+            Bloqueio bloqueio = new Bloqueio(indice + 1, prazo);
+            prazos.set(indice, prazo);
+            vencimentos.add(bloqueio);
+            return bloqueio;
+        }
+
+        private int tomarQualquer() {
+            int indice = procurarLivre();
+            if (indice < 0 && recuperarExpirados() > 0) {
+                indice = procurarLivre();
+            }
+            return indice;
+        }
+
+        private int procurarLivre() {
+            int palavras = ocupados.length();
+            int inicio = Math.floorMod(dica.get(), palavras);
+            for (int n = 0; n < palavras; n++) {
+                int palavra = (inicio + n) % palavras;
+                long valor;
+                long livres;
+                while ((livres = ~(valor = ocupados.get(palavra)) & mascaraValida(palavra)) != 0) {
+                    long bit = Long.lowestOneBit(livres);
+                    if (ocupados.compareAndSet(palavra, valor, valor | bit)) {
+                        totalOcupados.incrementAndGet();
+                        dica.set(palavra);
+                        return (palavra << 6) + Long.numberOfTrailingZeros(bit);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private int tomarVarios(int quantidade, int[] destino, int obtidos) {
+            int palavras = ocupados.length();
+            for (int palavra = 0; palavra < palavras && obtidos < quantidade; palavra++) {
+                long valor;
+                long livres;
+                while (obtidos < quantidade
+                        && (livres = ~(valor = ocupados.get(palavra)) & mascaraValida(palavra)) != 0) {
+                    long novos = 0;
+                    for (int k = obtidos; k < quantidade && livres != 0; k++) {
+                        long bit = Long.lowestOneBit(livres);
+                        novos |= bit;
+                        livres &= ~bit;
+                    }
+                    if (ocupados.compareAndSet(palavra, valor, valor | novos)) {
+                        totalOcupados.addAndGet(Long.bitCount(novos));
+                        for (long resto = novos; resto != 0; resto &= resto - 1) {
+                            destino[obtidos++] = (palavra << 6) + Long.numberOfTrailingZeros(resto) + 1;
+                        }
+                    }
+                }
+            }
+            return obtidos;
+        }
+
+        private boolean tomar(int indice) {
+            int palavra = indice >>> 6;
+            long bit = 1L << indice;
+            long valor;
+            while (((valor = ocupados.get(palavra)) & bit) == 0) {
+                if (ocupados.compareAndSet(palavra, valor, valor | bit)) {
+                    totalOcupados.incrementAndGet();
+                    return true;
+                }
+            }
+            long prazo = prazos.get(indice);
+            if (prazo != CONFIRMADO && prazo <= agora() && prazos.compareAndSet(indice, prazo, CONFIRMADO)) {
+                // Bloqueio vencido: o assento passa direto para o novo dono.
+                vencimentos.remove(new Bloqueio(indice + 1, prazo));
+                avisarVencimento();
+                return true;
+            }
+            return false;
+        }
+
+        private void avisarVencimento() {
+            if (aoVencer != null) {
+                aoVencer.run();
+            }
+        }
+
+        private void soltar(int indice) {
+            int palavra = indice >>> 6;
+            long bit = 1L << indice;
+            long valor;
+            while (((valor = ocupados.get(palavra)) & bit) != 0) {
+                if (ocupados.compareAndSet(palavra, valor, valor & ~bit)) {
+                    totalOcupados.decrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        private long mascaraValida(int palavra) {
+            int restantes = capacidade - (palavra << 6);
+            return restantes >= 64 ? -1L : (1L << restantes) - 1;
+        }
+
+        private int indiceDe(int assento) {
+            if (assento < 1 || assento > capacidade) {
+                throw new IllegalArgumentException("Assento inexistente: " + assento);
+            }
+            return assento - 1;
+        }
+
+        private long agora() {
+            return System.nanoTime() - origem;
+        }
+    }
+
+    /**
+     * Classe que representa um assento bloqueado aguardando confirmação.
+     */
+    public static class Bloqueio {
+        static final Comparator<Bloqueio> POR_PRAZO =
+                Comparator.<Bloqueio>comparingLong(b -> b.prazo).thenComparingInt(b -> b.assento);
+
+        private final int assento;
+        private final long prazo;
+
+        Bloqueio(int assento, long prazo) {
+            this.assento = assento;
+            this.prazo = prazo;
+        }
+
+        public int getAssento() {
+            return assento;
+        }
     }
 
     /**
      * Classe que representa um voo.
+     * O número de reservas vendidas pode passar da capacidade física até o
+     * limite de overbooking; quem fica além dos assentos recebe o assento 0
+     * e é acomodado quando algum assento vaga. Com o voo esgotado, os
+     * passageiros podem entrar numa lista de espera por prioridade, promovida
+     * automaticamente a cada cancelamento. Um bloqueio de assento ocupa uma
+     * vaga de venda até ser confirmado, liberado ou vencer.
      */
     public static class Voo {
         private final String numero;
         private final int capacidade;
-        private final List<Reserva> reservas = new ArrayList<>();
+        private final MapaAssentos assentos;
+        // Conjunto por identidade, dimensionado pela capacidade: cancelar remove
+        // em O(1), sem varrer a fila.
+        private final Set<Reserva> reservas;
+        // Reservas vendidas mais bloqueios ainda não encerrados.
+        private final AtomicInteger vendidas = new AtomicInteger();
+        private final Queue<Reserva> semAssento = new ConcurrentLinkedQueue<>();
+        private final PriorityBlockingQueue<Espera> espera = new PriorityBlockingQueue<>();
+        private final AtomicLong sequenciaEspera = new AtomicLong();
+        private volatile int limite;
+        private volatile double taxaOverbooking;
+        private volatile EstatisticasNoShow estatisticas = new EstatisticasNoShow();
+        private volatile SistemaReservas sistema;
+        // Marcado quando uma reserva sai sem cadastro; o voo não pode mais ser cadastrado.
+        private volatile boolean avulso;
+        private final Manifesto manifesto = new Manifesto();
 
         public Voo(String numero, int capacidade) {
+            this(numero, capacidade, 0.0);
+        }
+
+        public Voo(String numero, int capacidade, double taxaOverbooking) {
             this.numero = Objects.requireNonNull(numero, "Número do voo não pode ser nulo");
             this.capacidade = capacidade;
+            this.assentos = new MapaAssentos(capacidade, this::devolverBloqueio);
+            this.reservas = ConcurrentHashMap.newKeySet(Math.max(capacidade, 16));
+            definirOverbooking(taxaOverbooking);
+        }
+
+        /**
+         * Define a fração de reservas vendidas além da capacidade (0,1 = 10%).
+         * Reduzir a taxa não cancela reservas já vendidas.
+         */
+        public void definirOverbooking(double taxa) {
+            if (!(taxa >= 0) || Double.isInfinite(taxa)) {
+                throw new IllegalArgumentException("Taxa de overbooking inválida: " + taxa);
+            }
+            this.taxaOverbooking = taxa;
+            this.limite = (int) Math.min(Integer.MAX_VALUE, capacidade + (long) Math.floor(capacidade * taxa));
+            promover();
+        }
+
+        /**
+         * Permite que vários voos da mesma rota acumulem as mesmas estatísticas.
+         */
+        public void definirEstatisticas(EstatisticasNoShow estatisticas) {
+            this.estatisticas = Objects.requireNonNull(estatisticas, "Estatísticas não podem ser nulas");
+        }
+
+        void vincular(SistemaReservas sistema) {
+            this.sistema = sistema;
+        }
+
+        boolean isAvulso() {
+            return avulso;
+        }
+
+        // Sem cadastro à vista, confere de novo sob o monitor de cadastrarVoo:
+        // ou a reserva enxerga o vínculo, ou o voo fica marcado como avulso.
+        private SistemaReservas cadastroDaReserva() {
+            SistemaReservas cadastro = sistema;
+            if (cadastro != null || avulso) {
+                return cadastro;
+            }
+            synchronized (this) {
+                if (sistema == null) {
+                    avulso = true;
+                }
+                return sistema;
+            }
         }
 
         public boolean isDisponivel() {
-            return reservas.size() < capacidade;
+            return vendidas.get() < limite;
+        }
+
+        /**
+         * Reserva qualquer assento livre de forma atômica; retorna null se o voo está esgotado.
+         * Dentro da margem de overbooking a reserva pode sair com o assento 0.
+         */
+        public Reserva reservar(Passageiro passageiro) {
+            Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+            if (tomarVagas(1) == 0) {
+                return null;
+            }
+            int assento = assentos.ocupar();
+            return registrar(passageiro, Math.max(assento, 0));
+        }
+
+        /**
+         * Reserva um assento específico; retorna null se ele já está ocupado.
+         */
+        public Reserva reservar(Passageiro passageiro, int assento) {
+            Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+            if (tomarVagas(1) == 0) {
+                return null;
+            }
+            if (!assentos.ocupar(assento)) {
+                devolverVagas(1);
+                return null;
+            }
+            return registrar(passageiro, assento);
+        }
+
+        /**
+         * Reserva um assento para cada passageiro, na ordem, com uma única
+         * varredura do mapa; os que não couberem ficam de fora da lista retornada.
+         */
+        public List<Reserva> reservar(List<Passageiro> passageiros) {
+            for (Passageiro passageiro : passageiros) {
+                Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+            }
+            int vagas = tomarVagas(passageiros.size());
+            int[] numeros = new int[vagas];
+            assentos.ocupar(vagas, numeros);
+            List<Reserva> confirmadas = new ArrayList<>(vagas);
+            for (int i = 0; i < vagas; i++) {
+                confirmadas.add(registrar(passageiros.get(i), numeros[i]));
+            }
+            return confirmadas;
+        }
+
+        /**
+         * Coloca o passageiro na lista de espera; maior prioridade é promovida
+         * primeiro e, na mesma prioridade, quem chegou antes. Se houver vaga a
+         * promoção acontece já nesta chamada.
+         */
+        public Espera aguardar(Passageiro passageiro, int prioridade) {
+            Espera entrada = new Espera(Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo"),
+                    this, prioridade, sequenciaEspera.getAndIncrement());
+            espera.add(entrada);
+            promover();
+            return entrada;
+        }
+
+        /**
+         * Bloqueia qualquer assento livre, tomando uma vaga de venda; retorna
+         * null se o voo está esgotado ou sem assento físico livre.
+         */
+        public Bloqueio bloquear(Duration validade) {
+            if (tomarVagas(1) == 0) {
+                return null;
+            }
+            Bloqueio bloqueio = assentos.bloquear(validade);
+            if (bloqueio == null) {
+                devolverVagas(1);
+            }
+            return bloqueio;
+        }
+
+        public Bloqueio bloquear(int assento, Duration validade) {
+            if (tomarVagas(1) == 0) {
+                return null;
+            }
+            Bloqueio bloqueio = assentos.bloquear(assento, validade);
+            if (bloqueio == null) {
+                devolverVagas(1);
+            }
+            return bloqueio;
+        }
+
+        /**
+         * Confirma um bloqueio para o passageiro com a vaga que ele já ocupa;
+         * retorna null se o bloqueio expirou.
+         */
+        public Reserva confirmar(Bloqueio bloqueio, Passageiro passageiro) {
+            Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+            if (!assentos.confirmar(bloqueio)) {
+                return null;
+            }
+            return registrar(passageiro, bloqueio.getAssento());
+        }
+
+        public boolean liberar(Bloqueio bloqueio) {
+            boolean liberado = assentos.liberar(bloqueio);
+            if (liberado) {
+                devolverBloqueio();
+            }
+            return liberado;
+        }
+
+        /**
+         * Cancela a reserva, devolve o assento e promove a lista de espera.
+         * Retorna false se a reserva já não estava ativa.
+         */
+        public boolean cancelar(Reserva reserva) {
+            Objects.requireNonNull(reserva, "Reserva não pode ser nula");
+            if (reserva.getVoo() != this) {
+                throw new IllegalArgumentException("A reserva deve pertencer a este voo");
+            }
+            int assento;
+            synchronized (reserva) {
+                if (reserva.getSituacao() != Reserva.Situacao.ATIVA) {
+                    return false;
+                }
+                reserva.definirSituacao(Reserva.Situacao.CANCELADA);
+                assento = reserva.getAssento();
+            }
+            reservas.remove(reserva);
+            reserva.getPassageiro().removerReserva(reserva);
+            SistemaReservas cadastro = sistema;
+            if (cadastro != null) {
+                cadastro.registrarCancelamento(reserva);
+            }
+            if (assento > 0) {
+                assentos.liberar(assento);
+            }
+            vendidas.decrementAndGet();
+            acomodar();
+            promover();
+            return true;
+        }
+
+        /**
+         * Registra o embarque. Quem está sem assento tenta ser acomodado; se não
+         * houver assento, a reserva fica preterida e o embarque é recusado.
+         */
+        public boolean embarcar(Reserva reserva) {
+            Objects.requireNonNull(reserva, "Reserva não pode ser nula");
+            if (reserva.getVoo() != this) {
+                throw new IllegalArgumentException("A reserva deve pertencer a este voo");
+            }
+            if (reserva.getAssento() == 0) {
+                acomodar();
+            }
+            synchronized (reserva) {
+                if (reserva.getSituacao() != Reserva.Situacao.ATIVA) {
+                    return false;
+                }
+                if (reserva.getAssento() == 0) {
+                    reserva.definirSituacao(Reserva.Situacao.PRETERIDA);
+                    return false;
+                }
+                reserva.definirSituacao(Reserva.Situacao.EMBARCADA);
+                return true;
+            }
+        }
+
+        /**
+         * Fecha o embarque: reservas ainda ativas viram no-show e o resultado
+         * entra nas estatísticas do voo. Retorna a quantidade de no-shows.
+         */
+        public int encerrarEmbarque() {
+            int embarcadas = 0;
+            int noShows = 0;
+            int preteridas = 0;
+            for (Reserva reserva : reservas) {
+                synchronized (reserva) {
+                    switch (reserva.getSituacao()) {
+                        case ATIVA:
+                            reserva.definirSituacao(Reserva.Situacao.NO_SHOW);
+                            noShows++;
+                            break;
+                        case EMBARCADA:
+                            embarcadas++;
+                            break;
+                        case PRETERIDA:
+                            preteridas++;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            estatisticas.registrar(embarcadas + noShows + preteridas, noShows, preteridas);
+            return noShows;
         }
 
         public void adicionarReserva(Reserva reserva) {
-            if (isDisponivel()) {
-                reservas.add(Objects.requireNonNull(reserva, "Reserva não pode ser nula"));
+            Objects.requireNonNull(reserva, "Reserva não pode ser nula");
+            if (reserva.getVoo() != this) {
+                throw new IllegalArgumentException("A reserva deve pertencer a este voo");
+            }
+            if (tomarVagas(1) > 0) {
+                int assento = assentos.ocupar();
+                reserva.definirAssento(Math.max(assento, 0));
+                incluir(reserva);
             } else {
                 System.out.println("Não é possível adicionar reserva. O voo " + numero + " está cheio.");
             }
         }
 
+        /**
+         * Toma vagas para todos ou para nenhum, devolvendo os assentos (0 para
+         * quem fica na margem de overbooking); null se não houver vagas suficientes.
+         */
+        int[] tomarLugares(int quantidade) {
+            int vagas = tomarVagas(quantidade);
+            if (vagas < quantidade) {
+                devolverVagas(vagas);
+                return null;
+            }
+            int[] numeros = new int[quantidade];
+            assentos.ocupar(quantidade, numeros);
+            return numeros;
+        }
+
+        void devolverLugares(int[] lugares) {
+            for (int assento : lugares) {
+                if (assento > 0) {
+                    assentos.liberar(assento);
+                }
+            }
+            vendidas.addAndGet(-lugares.length);
+            acomodar();
+            promover();
+        }
+
+        Reserva registrar(Passageiro passageiro, int assento) {
+            Reserva reserva = new Reserva(passageiro, this, assento);
+            incluir(reserva);
+            return reserva;
+        }
+
+        private void incluir(Reserva reserva) {
+            reservas.add(reserva);
+            reserva.getPassageiro().adicionarReserva(reserva);
+            SistemaReservas cadastro = cadastroDaReserva();
+            if (cadastro != null) {
+                cadastro.registrarReserva(reserva);
+            }
+            if (reserva.getAssento() == 0) {
+                semAssento.add(reserva);
+                acomodar();
+            }
+        }
+
+        /**
+         * Toma até {@code quantidade} vagas de venda; com o voo esgotado,
+         * recupera antes os bloqueios vencidos, que devolvem as suas.
+         */
+        private int tomarVagas(int quantidade) {
+            int obtidas = tentarVagas(quantidade);
+            if (obtidas < quantidade && assentos.recuperarExpirados() > 0) {
+                obtidas += tentarVagas(quantidade - obtidas);
+            }
+            return obtidas;
+        }
+
+        private int tentarVagas(int quantidade) {
+            while (true) {
+                int atual = vendidas.get();
+                int obtidas = Math.min(quantidade, limite - atual);
+                if (obtidas <= 0) {
+                    return 0;
+                }
+                if (vendidas.compareAndSet(atual, atual + obtidas)) {
+                    return obtidas;
+                }
+            }
+        }
+
+        private void devolverVagas(int quantidade) {
+            if (quantidade > 0) {
+                vendidas.addAndGet(-quantidade);
+                promover();
+            }
+        }
+
+        // Um bloqueio terminou sem virar reserva: o assento já voltou ao mapa.
+        private void devolverBloqueio() {
+            vendidas.decrementAndGet();
+            acomodar();
+            promover();
+        }
+
+        /**
+         * Passa assentos livres para reservas vendidas sem assento. Quem
+         * enfileira uma reserva sem assento também chama este método, então um
+         * assento liberado ao mesmo tempo não fica esquecido.
+         */
+        private void acomodar() {
+            while (!semAssento.isEmpty()) {
+                int assento = assentos.ocupar();
+                if (assento < 0) {
+                    return;
+                }
+                Reserva reserva = semAssento.poll();
+                boolean acomodada = false;
+                if (reserva != null) {
+                    synchronized (reserva) {
+                        if (reserva.getSituacao() == Reserva.Situacao.ATIVA && reserva.getAssento() == 0) {
+                            reserva.definirAssento(assento);
+                            acomodada = true;
+                        }
+                    }
+                }
+                if (!acomodada) {
+                    assentos.liberar(assento);
+                }
+            }
+        }
+
+        /**
+         * Promove a lista de espera enquanto houver vagas. Cada promoção custa
+         * O(log n) no heap; entradas canceladas são descartadas ao sair dele.
+         */
+        private void promover() {
+            while (!espera.isEmpty()) {
+                if (tomarVagas(1) == 0) {
+                    return;
+                }
+                Espera entrada = espera.poll();
+                if (entrada == null || !entrada.iniciarPromocao()) {
+                    vendidas.decrementAndGet();
+                    continue;
+                }
+                int assento = assentos.ocupar();
+                entrada.concluir(registrar(entrada.getPassageiro(), Math.max(assento, 0)));
+            }
+        }
+
+        public MapaAssentos getAssentos() {
+            return assentos;
+        }
+
         public String getNumero() {
             return numero;
         }
 
+        public int getVendidas() {
+            return vendidas.get();
+        }
+
+        public int getLimiteVendas() {
+            return limite;
+        }
+
+        public double getTaxaOverbooking() {
+            return taxaOverbooking;
+        }
+
+        public int getTamanhoEspera() {
+            return espera.size();
+        }
+
+        public EstatisticasNoShow getEstatisticas() {
+            return estatisticas;
+        }
+
+        Manifesto getManifesto() {
+            return manifesto;
+        }
+
         public void exibir() {
-            System.out.println("Voo: " + numero + " - Capacidade: " + capacidade + " - Reservas: " + reservas.size() + "/" + capacidade);
+            System.out.println("Voo: " + numero + " - Capacidade: " + capacidade + " - Reservas: " + vendidas.get() + "/" + capacidade);
+        }
+    }
+
+    /**
+     * Classe que representa um lugar na lista de espera de um voo.
+     */
+    public static class Espera implements Comparable<Espera> {
+        private static final int AGUARDANDO = 0;
+        private static final int PROMOVENDO = 1;
+        private static final int PROMOVIDA = 2;
+        private static final int CANCELADA = 3;
+
+        private final Passageiro passageiro;
+        private final Voo voo;
+        private final int prioridade;
+        private final long sequencia;
+        private final AtomicInteger estado = new AtomicInteger(AGUARDANDO);
+        private volatile Reserva reserva;
+
+        Espera(Passageiro passageiro, Voo voo, int prioridade, long sequencia) {
+            this.passageiro = passageiro;
+            this.voo = voo;
+            this.prioridade = prioridade;
+            this.sequencia = sequencia;
+        }
+
+        /**
+         * Sai da lista de espera; retorna false se já foi promovido.
+         */
+        public boolean cancelar() {
+            return estado.compareAndSet(AGUARDANDO, CANCELADA);
+        }
+
+        boolean iniciarPromocao() {
+            return estado.compareAndSet(AGUARDANDO, PROMOVENDO);
+        }
+
+        void concluir(Reserva reserva) {
+            this.reserva = reserva;
+            estado.set(PROMOVIDA);
+        }
+
+        public boolean isPromovido() {
+            return estado.get() == PROMOVIDA;
+        }
+
+        /**
+         * A reserva criada na promoção, ou null enquanto aguarda.
+         */
+        public Reserva getReserva() {
+            return reserva;
+        }
+
+        public Passageiro getPassageiro() {
+            return passageiro;
+        }
+
+        public Voo getVoo() {
+            return voo;
+        }
+
+        public int getPrioridade() {
+            return prioridade;
+        }
+
+        @Override
+        public int compareTo(Espera outra) {
+            if (prioridade != outra.prioridade) {
+                return Integer.compare(outra.prioridade, prioridade);
+            }
+            return Long.compare(sequencia, outra.sequencia);
+        }
+    }
+
+    /**
+     * Estatísticas de no-show acumuladas por voo ou por rota.
+     */
+    public static class EstatisticasNoShow {
+        private final LongAdder voos = new LongAdder();
+        private final LongAdder reservas = new LongAdder();
+        private final LongAdder noShows = new LongAdder();
+        private final LongAdder preteridas = new LongAdder();
+
+        void registrar(int reservas, int noShows, int preteridas) {
+            this.voos.increment();
+            this.reservas.add(reservas);
+            this.noShows.add(noShows);
+            this.preteridas.add(preteridas);
+        }
+
+        public long getVoos() {
+            return voos.sum();
+        }
+
+        public long getReservas() {
+            return reservas.sum();
+        }
+
+        public long getNoShows() {
+            return noShows.sum();
+        }
+
+        public long getPreteridas() {
+            return preteridas.sum();
+        }
+
+        public double getTaxaNoShow() {
+            long total = reservas.sum();
+            return total == 0 ? 0.0 : (double) noShows.sum() / total;
+        }
+
+        /**
+         * Taxa de overbooking que, pela média observada, enche o voo sem
+         * preterir ninguém: vender capacidade / (1 - taxaNoShow).
+         */
+        public double sugerirOverbooking() {
+            double taxa = getTaxaNoShow();
+            return taxa >= 1.0 ? 0.0 : taxa / (1.0 - taxa);
+        }
+
+        @Override
+        public String toString() {
+            return "Voos: " + getVoos() + " - Reservas: " + getReservas() + " - No-shows: " + getNoShows()
+                    + " - Preteridas: " + getPreteridas();
         }
     }
 
@@ -79,19 +1024,428 @@ public class SistemaReservas {
      * Classe que representa uma reserva.
      */
     public static class Reserva {
+        static final Comparator<Reserva> POR_CRIACAO = Comparator.comparingLong(r -> r.sequencia);
+        private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+        public enum Situacao {
+            ATIVA,
+            CANCELADA,
+            EMBARCADA,
+            PRETERIDA,
+            NO_SHOW
+        }
+
         private final Passageiro passageiro;
         private final Voo voo;
+        private final long sequencia = SEQUENCIA.getAndIncrement();
+        private volatile int assento;
+        private volatile Situacao situacao = Situacao.ATIVA;
 
         public Reserva(Passageiro passageiro, Voo voo) {
+            this(passageiro, voo, 0);
+        }
+
+        Reserva(Passageiro passageiro, Voo voo, int assento) {
             this.passageiro = Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
             this.voo = Objects.requireNonNull(voo, "Voo não pode ser nulo");
+            this.assento = assento;
+        }
+
+        void definirAssento(int assento) {
+            this.assento = assento;
+        }
+
+        void definirSituacao(Situacao situacao) {
+            this.situacao = situacao;
+        }
+
+        public boolean cancelar() {
+            return voo.cancelar(this);
+        }
+
+        public Passageiro getPassageiro() {
+            return passageiro;
+        }
+
+        public Voo getVoo() {
+            return voo;
+        }
+
+        /**
+         * O assento da reserva, ou 0 se ela foi vendida no overbooking e ainda não foi acomodada.
+         */
+        public int getAssento() {
+            return assento;
+        }
+
+        public Situacao getSituacao() {
+            return situacao;
         }
 
         public void exibir() {
-            System.out.println("Reserva para o voo: " + voo.getNumero() + " - Passageiro: " + passageiro.getNome());
+            System.out.println("Reserva para o voo: " + voo.getNumero() + " - Assento: " + (assento > 0 ? assento : "a definir") + " - Passageiro: " + passageiro.getNome());
+        }
+    }
+
+    /**
+     * Manifesto de um voo: quantas reservas ativas cada passageiro tem nele.
+     * Tabela de endereçamento aberto com chaves e contagens em {@code int[]},
+     * sem boxing; a remoção desloca o agrupamento seguinte em vez de deixar
+     * lápides, então a tabela não degrada com muitos cancelamentos.
+     */
+    static final class Manifesto {
+        private static final int VAZIO = -1;
+
+        private int[] chaves = novasChaves(16);
+        private int[] contagens = new int[16];
+        private int tamanho;
+
+        synchronized void adicionar(int id) {
+            int posicao = posicaoDe(id);
+            if (chaves[posicao] == id) {
+                contagens[posicao]++;
+                return;
+            }
+            chaves[posicao] = id;
+            contagens[posicao] = 1;
+            if (++tamanho * 2 > chaves.length) {
+                redimensionar();
+            }
+        }
+
+        synchronized void remover(int id) {
+            int posicao = posicaoDe(id);
+            if (chaves[posicao] != id || --contagens[posicao] > 0) {
+                return;
+            }
+            int mascara = chaves.length - 1;
+            int vaga = posicao;
+            for (int i = (vaga + 1) & mascara; chaves[i] != VAZIO; i = (i + 1) & mascara) {
+                int ideal = espalhar(chaves[i]) & mascara;
+                if (((i - ideal) & mascara) >= ((i - vaga) & mascara)) {
+                    chaves[vaga] = chaves[i];
+                    contagens[vaga] = contagens[i];
+                    vaga = i;
+                }
+            }
+            chaves[vaga] = VAZIO;
+            contagens[vaga] = 0;
+            tamanho--;
+        }
+
+        synchronized int contar(int id) {
+            int posicao = posicaoDe(id);
+            return chaves[posicao] == id ? contagens[posicao] : 0;
+        }
+
+        synchronized int tamanho() {
+            return tamanho;
+        }
+
+        synchronized int[] ids() {
+            int[] ids = new int[tamanho];
+            int n = 0;
+            for (int chave : chaves) {
+                if (chave != VAZIO) {
+                    ids[n++] = chave;
+                }
+            }
+            return ids;
+        }
+
+        private int posicaoDe(int id) {
+            int mascara = chaves.length - 1;
+            int i = espalhar(id) & mascara;
+            while (chaves[i] != VAZIO && chaves[i] != id) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+
+        private void redimensionar() {
+            int[] antigasChaves = chaves;
+            int[] antigasContagens = contagens;
+            chaves = novasChaves(antigasChaves.length * 2);
+            contagens = new int[chaves.length];
+            for (int i = 0; i < antigasChaves.length; i++) {
+                if (antigasChaves[i] != VAZIO) {
+                    int posicao = posicaoDe(antigasChaves[i]);
+                    chaves[posicao] = antigasChaves[i];
+                    contagens[posicao] = antigasContagens[i];
+                }
+            }
+        }
+
+        private static int[] novasChaves(int capacidade) {
+            int[] chaves = new int[capacidade];
+            Arrays.fill(chaves, VAZIO);
+            return chaves;
+        }
+
+        private static int espalhar(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Cadastra um voo no índice por número. O voo precisa ser cadastrado
+     * antes de receber reservas para que o manifesto fique completo.
+     */
+    public void cadastrarVoo(Voo voo) {
+        Objects.requireNonNull(voo, "Voo não pode ser nulo");
+        synchronized (voo) {
+            if (voo.sistema == this) {
+                return;
+            }
+            if (voo.sistema != null) {
+                throw new IllegalArgumentException("O voo " + voo.getNumero() + " já pertence a outro sistema");
+            }
+            if (voo.isAvulso() || voo.getVendidas() > 0) {
+                throw new IllegalArgumentException("O voo " + voo.getNumero() + " já tem reservas");
+            }
+            if (voos.putIfAbsent(voo.getNumero(), voo) != null) {
+                throw new IllegalArgumentException("Já existe um voo com o número " + voo.getNumero());
+            }
+            voo.vincular(this);
+        }
+    }
+
+    /**
+     * Cadastra o passageiro e retorna seu id. Passageiros que reservam em
+     * voos cadastrados são cadastrados automaticamente.
+     */
+    public int cadastrarPassageiro(Passageiro passageiro) {
+        Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+        int id = passageiro.getId();
+        if (id >= 0 && passageiro.sistema == this) {
+            return id;
+        }
+        trava.writeLock().lock();
+        try {
+            if (passageiro.getId() >= 0) {
+                if (passageiro.sistema != this) {
+                    throw new IllegalArgumentException("O passageiro " + passageiro.getNome() + " já pertence a outro sistema");
+                }
+                return passageiro.getId();
+            }
+            passageiro.vincular(this, passageiros.size());
+            passageiros.add(passageiro);
+            return passageiro.getId();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    public Voo buscarVoo(String numero) {
+        return voos.get(numero);
+    }
+
+    public Passageiro buscarPassageiro(int id) {
+        trava.readLock().lock();
+        try {
+            return id >= 0 && id < passageiros.size() ? passageiros.get(id) : null;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reservas ativas do passageiro, em ordem de criação; lista vazia se o id não existe.
+     */
+    public List<Reserva> buscarReservas(int idPassageiro) {
+        Passageiro passageiro = buscarPassageiro(idPassageiro);
+        return passageiro == null ? Collections.emptyList() : passageiro.getReservas();
+    }
+
+    /**
+     * Passageiros com reserva ativa no voo, lidos do manifesto sem percorrer as reservas.
+     */
+    public List<Passageiro> listarPassageiros(String numeroVoo) {
+        int[] ids = idsPassageiros(numeroVoo);
+        List<Passageiro> lista = new ArrayList<>(ids.length);
+        trava.readLock().lock();
+        try {
+            for (int id : ids) {
+                lista.add(passageiros.get(id));
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+        return lista;
+    }
+
+    /**
+     * Ids dos passageiros com reserva ativa no voo, sem ordem definida.
+     */
+    public int[] idsPassageiros(String numeroVoo) {
+        Voo voo = voos.get(numeroVoo);
+        return voo == null ? new int[0] : voo.getManifesto().ids();
+    }
+
+    public boolean temReserva(int idPassageiro, String numeroVoo) {
+        Voo voo = voos.get(numeroVoo);
+        return voo != null && voo.getManifesto().contar(idPassageiro) > 0;
+    }
+
+    public int getTotalVoos() {
+        return voos.size();
+    }
+
+    public int getTotalPassageiros() {
+        trava.readLock().lock();
+        try {
+            return passageiros.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    void registrarReserva(Reserva reserva) {
+        int id = cadastrarPassageiro(reserva.getPassageiro());
+        reserva.getVoo().getManifesto().adicionar(id);
+    }
+
+    void registrarCancelamento(Reserva reserva) {
+        reserva.getVoo().getManifesto().remover(reserva.getPassageiro().getId());
+    }
+
+    /**
+     * Classe que representa um pedido de reserva dentro de um lote.
+     */
+    public static class SolicitacaoReserva {
+        private final Passageiro passageiro;
+        private final Voo voo;
+
+        public SolicitacaoReserva(Passageiro passageiro, Voo voo) {
+            this.passageiro = Objects.requireNonNull(passageiro, "Passageiro não pode ser nulo");
+            this.voo = Objects.requireNonNull(voo, "Voo não pode ser nulo");
+        }
+
+        public Passageiro getPassageiro() {
+            return passageiro;
+        }
+
+        public Voo getVoo() {
+            return voo;
+        }
+    }
+
+    /**
+     * Classe que representa o resultado de um pedido de reserva.
+     */
+    public static class ResultadoReserva {
+        public enum Situacao {
+            CONFIRMADA,
+            VOO_CHEIO
+        }
+
+        private final SolicitacaoReserva solicitacao;
+        private final Reserva reserva;
+
+        ResultadoReserva(SolicitacaoReserva solicitacao, Reserva reserva) {
+            this.solicitacao = solicitacao;
+            this.reserva = reserva;
+        }
+
+        public SolicitacaoReserva getSolicitacao() {
+            return solicitacao;
+        }
+
+        public Situacao getSituacao() {
+            return reserva != null ? Situacao.CONFIRMADA : Situacao.VOO_CHEIO;
+        }
+
+        /**
+         * A reserva criada, ou null se o voo estava cheio.
+         */
+        public Reserva getReserva() {
+            return reserva;
         }
     }
 
+    /**
+     * Classe que representa o resultado de um itinerário de vários trechos.
+     */
+    public static class ResultadoItinerario {
+        private final List<Reserva> reservas;
+        private final Voo trechoSemAssento;
+
+        ResultadoItinerario(List<Reserva> reservas, Voo trechoSemAssento) {
+            this.reservas = reservas;
+            this.trechoSemAssento = trechoSemAssento;
+        }
+
+        public boolean isConfirmado() {
+            return trechoSemAssento == null;
+        }
+
+        public List<Reserva> getReservas() {
+            return reservas;
+        }
+
+        /**
+         * O primeiro trecho que não tinha vagas suficientes, ou null se o itinerário foi confirmado.
+         */
+        public Voo getTrechoSemAssento() {
+            return trechoSemAssento;
+        }
+    }
+
+    /**
+     * Processa um lote de pedidos agrupando-os por voo: cada voo é varrido
+     * uma única vez para todos os seus passageiros. Os resultados saem na
+     * ordem dos pedidos e nada é impresso.
+     */
+    public static List<ResultadoReserva> reservarEmLote(List<SolicitacaoReserva> solicitacoes) {
+        Map<Voo, List<Integer>> porVoo = new LinkedHashMap<>();
+        for (int i = 0; i < solicitacoes.size(); i++) {
+            porVoo.computeIfAbsent(solicitacoes.get(i).getVoo(), v -> new ArrayList<>()).add(i);
+        }
+        ResultadoReserva[] resultados = new ResultadoReserva[solicitacoes.size()];
+        for (Map.Entry<Voo, List<Integer>> entrada : porVoo.entrySet()) {
+            List<Integer> posicoes = entrada.getValue();
+            List<Passageiro> passageiros = new ArrayList<>(posicoes.size());
+            for (int posicao : posicoes) {
+                passageiros.add(solicitacoes.get(posicao).getPassageiro());
+            }
+            List<Reserva> confirmadas = entrada.getKey().reservar(passageiros);
+            for (int i = 0; i < posicoes.size(); i++) {
+                int posicao = posicoes.get(i);
+                Reserva reserva = i < confirmadas.size() ? confirmadas.get(i) : null;
+                resultados[posicao] = new ResultadoReserva(solicitacoes.get(posicao), reserva);
+            }
+        }
+        List<ResultadoReserva> lista = new ArrayList<>(resultados.length);
+        Collections.addAll(lista, resultados);
+        return lista;
+    }
+
+    /**
+     * Reserva todos os trechos para todo o grupo, ou nada: se algum trecho
+     * não tiver vagas para todos, os lugares já tomados são devolvidos.
+     */
+    public static ResultadoItinerario reservarItinerario(List<Passageiro> grupo, List<Voo> trechos) {
+        List<int[]> tomados = new ArrayList<>(trechos.size());
+        for (Voo trecho : trechos) {
+            int[] lugares = trecho.tomarLugares(grupo.size());
+            if (lugares == null) {
+                for (int t = 0; t < tomados.size(); t++) {
+                    trechos.get(t).devolverLugares(tomados.get(t));
+                }
+                return new ResultadoItinerario(Collections.emptyList(), trecho);
+            }
+            tomados.add(lugares);
+        }
+        List<Reserva> reservas = new ArrayList<>(grupo.size() * trechos.size());
+        for (int t = 0; t < trechos.size(); t++) {
+            for (int i = 0; i < grupo.size(); i++) {
+                reservas.add(trechos.get(t).registrar(grupo.get(i), tomados.get(t)[i]));
+            }
+        }
+        return new ResultadoItinerario(reservas, null);
+    }
+
     public static void main(String[] args) {
         // Criando passageiros
         Passageiro amanda = new Passageiro("Amanda");
@@ -110,7 +1464,7 @@ public class SistemaReservas {
         // Listando reservas
         amanda.listarReservas();
         ryan.listarReservas();
-        
+
         // Exibindo status dos voos
         vooA.exibir();
         vooB.exibir();